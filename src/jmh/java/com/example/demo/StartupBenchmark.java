@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Launch-to-exit time of a fresh JVM, as a scheduler starting one job pays it. Every mode extracts the same document
+ * through ParserCli.extract: SPRING_CONTEXT first starts the application context (non-web), as a job going through
+ * Spring would; CLI and CLI_CDS run ParserCli from the thin jar, without and with the class-data-sharing archive.
+ * The CLI modes need mvn -Pcds package first.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    public enum LaunchMode {
+        SPRING_CONTEXT, CLI, CLI_CDS
+    }
+
+    @Param({"SPRING_CONTEXT", "CLI", "CLI_CDS"})
+    public LaunchMode mode;
+
+    @Param({"target/demo-0.0.1-SNAPSHOT-cli.jar"})
+    public String cliJar;
+
+    @Param({"target/parser-cli.jsa"})
+    public String archive;
+
+    @Param({"src/main/resources/MDIR_Form.docx"})
+    public String document;
+
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        command = new ArrayList<>();
+        command.add(java);
+        if (mode == LaunchMode.SPRING_CONTEXT) {
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                    SpringExtract.class.getName(), document));
+            return;
+        }
+        if (!Files.isRegularFile(Paths.get(cliJar))) {
+            throw new FileNotFoundException(cliJar + " (build it with mvn -Pcds package)");
+        }
+        if (mode == LaunchMode.CLI_CDS) {
+            if (!Files.isRegularFile(Paths.get(archive))) {
+                throw new FileNotFoundException(archive + " (build it with mvn -Pcds package)");
+            }
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.addAll(Arrays.asList("-jar", cliJar, "extract", document));
+    }
+
+    // Starts the context, then does the same extraction as the CLI modes; output is discarded like theirs
+    public static final class SpringExtract {
+        public static void main(String[] args) throws IOException {
+            int exitCode;
+            try (ConfigurableApplicationContext context = SpringApplication.run(DemoApplication.class,
+                    "--spring.main.web-application-type=none")) {
+                exitCode = ParserCli.extract(args, OutputStream.nullOutputStream());
+            }
+            System.exit(exitCode);
+        }
+    }
+
+    @Benchmark
+    public int launch() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " exited with " + exitCode);
+        }
+        return exitCode;
+    }
+}
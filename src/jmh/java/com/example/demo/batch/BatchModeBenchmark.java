@@ -0,0 +1,73 @@
+package com.example.demo.batch;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.example.demo.parser.FormType;
+
+/**
+ * Whole batch runs in PLATFORM and VIRTUAL mode over the same inputs. By default the inputs are copies of the
+ * bundled MDIR form in a local temp directory, where fetching is nearly free; point inputDir at a directory on a
+ * network share (-p inputDir=/mnt/share/forms) to measure the I/O-bound case the virtual mode is meant for.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchModeBenchmark {
+
+    private static final int LOCAL_COPIES = 200;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public BatchRunner.ExecutionMode mode;
+
+    @Param({""})
+    public String inputDir;
+
+    private Path scratch;
+    private List<BatchRunner.BatchInput> inputs;
+    private int threads;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        scratch = Files.createTempDirectory("batch-bench-");
+        Path source;
+        if (inputDir.isEmpty()) {
+            source = Files.createDirectories(scratch.resolve("in"));
+            try (InputStream in = BatchModeBenchmark.class.getClassLoader().getResourceAsStream("MDIR_Form.docx")) {
+                if (in == null) throw new FileNotFoundException("MDIR_Form.docx");
+                byte[] form = in.readAllBytes();
+                for (int i = 0; i < LOCAL_COPIES; i++) {
+                    Files.write(source.resolve("form-" + i + ".docx"), form);
+                }
+            }
+        } else {
+            source = Paths.get(inputDir);
+        }
+        inputs = BatchRunner.resolveInputs(source.toString());
+        threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(scratch)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public BatchReport run() throws Exception {
+        int maxInFlight = mode == BatchRunner.ExecutionMode.VIRTUAL ? threads * 16 : threads * 2;
+        return BatchRunner.run(inputs, scratch.resolve("out-" + mode), FormType.MDIR, mode, threads, maxInFlight,
+                null, null, null);
+    }
+}
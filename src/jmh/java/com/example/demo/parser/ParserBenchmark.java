@@ -0,0 +1,83 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Open cost (unzip + XMLBeans parse) and extraction cost are measured separately: the *Open benchmarks only
+ * build the XWPFDocument, the *Extract benchmarks reuse a document opened once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private byte[] mdirBytes;
+    private byte[] nzBytes;
+    private XWPFDocument mdirDocument;
+    private XWPFDocument nzDocument;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mdirBytes = readResource("MDIR_Form.docx");
+        nzBytes = readResource("NZ_Adverse.docx");
+        mdirDocument = new XWPFDocument(new ByteArrayInputStream(mdirBytes));
+        nzDocument = new XWPFDocument(new ByteArrayInputStream(nzBytes));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mdirDocument.close();
+        nzDocument.close();
+    }
+
+    @Benchmark
+    public void mdirOpen(Blackhole bh) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(mdirBytes))) {
+            bh.consume(document.getBodyElements().size());
+        }
+    }
+
+    @Benchmark
+    public LinkedHashMap<String, Object> mdirExtract() {
+        return WordFormParser.extractDataFromDocument(mdirDocument);
+    }
+
+    @Benchmark
+    public LinkedHashMap<String, Object> mdirOpenAndExtract() throws IOException {
+        return WordFormParser.extractDataFromDocument(new ByteArrayInputStream(mdirBytes), WordFormParser.Engine.DOM);
+    }
+
+    @Benchmark
+    public LinkedHashMap<String, Object> mdirStreaming() throws IOException {
+        return WordFormParser.extractDataFromDocument(new ByteArrayInputStream(mdirBytes),
+                WordFormParser.Engine.STREAMING);
+    }
+
+    @Benchmark
+    public void nzOpen(Blackhole bh) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(nzBytes))) {
+            bh.consume(document.getTables().size());
+        }
+    }
+
+    @Benchmark
+    public LinkedHashMap<String, Object> nzExtract() {
+        return WordFormParserNZ.extractDataFromDocument(nzDocument);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = ParserBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) throw new FileNotFoundException(name);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import com.example.demo.batch.BatchRunner;
+import com.example.demo.parser.FormSniffer;
+import com.example.demo.parser.FormType;
+import com.example.demo.parser.NdjsonWriter;
+
+/**
+ * Entry point for short-lived JVMs, such as one launch per scheduled job. extract and batch only load the parsers;
+ * the Spring context is started for serve alone. Run from the thin jar built by the cds profile, together with its
+ * class-data-sharing archive, so the parser classes are mapped from the archive instead of being loaded and
+ * verified on every launch:
+ * <pre>
+ * java -XX:SharedArchiveFile=target/parser-cli.jsa -jar target/demo-0.0.1-SNAPSHOT-cli.jar extract form.docx
+ * </pre>
+ */
+public final class ParserCli {
+
+    private ParserCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+        }
+        String[] options = Arrays.copyOfRange(args, 1, args.length);
+        switch (args[0]) {
+            case "extract":
+                System.exit(extract(options, System.out));
+                break;
+            case "batch":
+                BatchRunner.main(options);
+                break;
+            case "serve":
+                DemoApplication.main(options);
+                break;
+            default:
+                usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ParserCli extract [--form mdir|nz|auto] <file>... [--form ...] <file>...");
+        System.err.println("       ParserCli batch <input-dir|@manifest-file> <output-dir> [options]");
+        System.err.println("       ParserCli serve [spring options]");
+        System.exit(2);
+    }
+
+    // One NDJSON line per file, {"file": ..., "data": ...}; --form applies to the files after it, and auto detects
+    // each file's form. Returns the exit code: 0 if every file was extracted, 1 otherwise.
+    static int extract(String[] args, OutputStream out) throws IOException {
+        FormType formType = FormType.MDIR;
+        int failed = 0;
+        NdjsonWriter ndjson = new NdjsonWriter(out);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--form") && i + 1 < args.length) {
+                String form = args[++i];
+                formType = "auto".equals(form) ? null : FormType.fromId(form);
+                continue;
+            }
+            Path file = Paths.get(args[i]);
+            try {
+                FormType form = formType != null ? formType : FormSniffer.detect(file);
+                if (form == null) throw new IOException("Not a recognised form");
+                ndjson.write(generator -> {
+                    generator.writeStartObject();
+                    generator.writeStringField("file", file.toString());
+                    generator.writeFieldName("data");
+                    form.writeJson(file, generator);
+                    generator.writeEndObject();
+                });
+            } catch (IOException | RuntimeException e) {
+                failed++;
+                System.err.println("[WARN] Could not extract " + file + ": " + e);
+            }
+        }
+        out.flush();
+        return failed == 0 ? 0 : 1;
+    }
+}
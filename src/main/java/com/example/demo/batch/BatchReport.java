@@ -0,0 +1,82 @@
+package com.example.demo.batch;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchReport {
+
+    private final int submitted;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+    private long elapsedNanos;
+    private long[] sortedLatencies = new long[0];
+
+    BatchReport(int submitted) {
+        this.submitted = submitted;
+    }
+
+    void recordSuccess(long nanos) {
+        succeeded.incrementAndGet();
+        latenciesNanos.add(nanos);
+    }
+
+    void recordFailure(Path path, Exception e) {
+        failed.incrementAndGet();
+        failures.add(path + ": " + e);
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        long[] values = new long[latenciesNanos.size()];
+        int i = 0;
+        for (Long latency : latenciesNanos) {
+            if (i == values.length) break;
+            values[i++] = latency;
+        }
+        Arrays.sort(values, 0, i);
+        sortedLatencies = Arrays.copyOf(values, i);
+    }
+
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    public double docsPerSecond() {
+        if (elapsedNanos == 0) return 0;
+        return (succeeded.get() + failed.get()) / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    public double percentileMillis(double percentile) {
+        if (sortedLatencies.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        index = Math.max(0, Math.min(index, sortedLatencies.length - 1));
+        return sortedLatencies[index] / 1_000_000.0;
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("[INFO] Documents: %d submitted, %d succeeded, %d failed%n",
+                submitted, succeeded.get(), failed.get()));
+        sb.append(String.format("[INFO] Elapsed: %d ms, throughput: %.1f docs/sec%n",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), docsPerSecond()));
+        sb.append(String.format("[INFO] Latency per document: p50 %.1f ms, p99 %.1f ms",
+                percentileMillis(50), percentileMillis(99)));
+        for (String failure : failures) {
+            sb.append(String.format("%n[ERROR] %s", failure));
+        }
+        return sb.toString();
+    }
+}
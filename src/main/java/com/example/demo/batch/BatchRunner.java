@@ -0,0 +1,312 @@
+package com.example.demo.batch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.example.demo.cache.ResultCache;
+import com.example.demo.parser.CompactResult;
+import com.example.demo.parser.CsvExporter;
+import com.example.demo.parser.ExtractionMetrics;
+import com.example.demo.parser.FormSniffer;
+import com.example.demo.parser.FormType;
+import com.example.demo.parser.JsonOutput;
+import com.example.demo.parser.NdjsonWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BatchRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchRunner.class);
+
+    private static final long CACHE_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    // PLATFORM parses on a pool of `threads` workers. VIRTUAL gives every document its own virtual thread for the
+    // fetch, and only `threads` of them parse at a time, which suits inputs on slow or remote storage.
+    public enum ExecutionMode {
+        PLATFORM, VIRTUAL
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            usage(null);
+        }
+        FormType formType = FormType.MDIR;
+        ExecutionMode mode = ExecutionMode.PLATFORM;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxInFlight = 0;
+        Path ndjsonFile = null;
+        Path csvDir = null;
+        Path cacheDir = null;
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                usage("Missing value for " + args[i]);
+            }
+            try {
+                switch (args[i]) {
+                    case "--form":
+                        // auto: each document is routed by FormSniffer
+                        formType = "auto".equals(args[i + 1]) ? null : FormType.fromId(args[i + 1]);
+                        break;
+                    case "--mode":
+                        mode = ExecutionMode.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[i + 1]);
+                        if (threads < 1) throw new IllegalArgumentException();
+                        break;
+                    case "--in-flight":
+                        maxInFlight = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--ndjson":
+                        ndjsonFile = Paths.get(args[i + 1]);
+                        break;
+                    case "--csv":
+                        csvDir = Paths.get(args[i + 1]);
+                        break;
+                    case "--cache-dir":
+                        cacheDir = Paths.get(args[i + 1]);
+                        break;
+                    default:
+                        usage("Unknown option: " + args[i]);
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException and InvalidPathException included
+                usage("Invalid value for " + args[i] + ": " + args[i + 1]);
+            }
+        }
+        if (maxInFlight <= 0) {
+            // Virtual threads are cheap, so keep many more fetches outstanding than there are parse slots
+            maxInFlight = mode == ExecutionMode.VIRTUAL ? threads * 16 : threads * 2;
+        }
+        List<BatchInput> inputs = resolveInputs(args[0]);
+        // The cache holds each result's JSON in memory, so it is only used when asked for; without it every
+        // document is streamed straight from the parser to its output
+        ResultCache cache = cacheDir == null ? null : new ResultCache(CACHE_MEMORY_BYTES, cacheDir);
+        // The parsers record on the global registry; this one only collects them for the summary below
+        SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+        Metrics.addRegistry(metrics);
+        if (cache != null) cache.bindTo(metrics);
+        BatchReport report;
+        try (NdjsonWriter ndjson = ndjsonFile == null ? null
+                : new NdjsonWriter(new BufferedOutputStream(Files.newOutputStream(ndjsonFile)));
+             CsvExporter csv = csvDir == null ? null
+                     : new CsvExporter(csvDir, formType == null ? "auto" : formType.getId(),
+                             CsvExporter.DEFAULT_ROW_GROUP_SIZE)) {
+            report = run(inputs, Paths.get(args[1]), formType, mode, threads, maxInFlight, ndjson, csv, cache);
+        }
+        System.out.println(report.summary());
+        if (cache != null) System.out.println(cache.summary());
+        String extraction = ExtractionMetrics.summary(metrics);
+        if (!extraction.isEmpty()) System.out.println(extraction);
+    }
+
+    private static void usage(String problem) {
+        if (problem != null) System.err.println("[ERROR] " + problem);
+        System.err.println("Usage: BatchRunner <input-dir|@manifest-file> <output-dir>"
+                + " [--form mdir|nz|auto] [--mode platform|virtual] [--threads N] [--in-flight N]"
+                + " [--ndjson results.ndjson] [--csv DIR] [--cache-dir DIR]");
+        System.exit(2);
+    }
+
+    // Output names are unique per batch, as they name the result and error files: a manifest entry is named by its
+    // path relative to the manifest's directory, or by its file name if it lies outside it, and a name that is
+    // still taken gets a counter before its extension
+    static List<BatchInput> resolveInputs(String source) throws IOException {
+        if (source.startsWith("@")) {
+            Path manifest = Paths.get(source.substring(1));
+            Path root = manifest.toAbsolutePath().normalize().getParent();
+            List<Path> paths;
+            try (Stream<String> lines = Files.lines(manifest, StandardCharsets.UTF_8)) {
+                paths = lines.map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .map(Paths::get)
+                        .collect(Collectors.toList());
+            }
+            Set<String> taken = new HashSet<>();
+            List<BatchInput> inputs = new ArrayList<>();
+            for (Path path : paths) {
+                Path absolute = path.toAbsolutePath().normalize();
+                String name = absolute.startsWith(root) ? root.relativize(absolute).toString()
+                        : path.getFileName().toString();
+                inputs.add(new BatchInput(path, uniqueName(name, taken)));
+            }
+            return inputs;
+        }
+        Path root = Paths.get(source);
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".docx"))
+                    .sorted()
+                    .map(path -> new BatchInput(path, root.relativize(path).toString()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String uniqueName(String name, Set<String> taken) {
+        if (taken.add(name)) return name;
+        int dot = name.lastIndexOf('.');
+        if (dot <= Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'))) dot = name.length();
+        for (int n = 2; ; n++) {
+            String candidate = name.substring(0, dot) + "-" + n + name.substring(dot);
+            if (taken.add(candidate)) return candidate;
+        }
+    }
+
+    // With an NdjsonWriter every result becomes one line of that stream; otherwise each input gets its own .json file.
+    // A null formType detects the form of each document. csv, if given, also gets every result as a row. cache may
+    // be null, in which case every document is parsed and streamed straight to its output.
+    public static BatchReport run(List<BatchInput> inputs, Path outputDir, FormType formType, ExecutionMode mode,
+                                  int threads, int maxInFlight, NdjsonWriter ndjson, CsvExporter csv,
+                                  ResultCache cache)
+            throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        ExecutorService pool = mode == ExecutionMode.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : new ForkJoinPool(threads);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // Parse slots for VIRTUAL mode; parsing is CPU-bound, so more than one per core only adds contention
+        Semaphore parsing = new Semaphore(threads);
+        BatchReport report = new BatchReport(inputs.size());
+        long start = System.nanoTime();
+        try {
+            for (BatchInput input : inputs) {
+                // Blocks the producer once maxInFlight documents are queued or parsing, so heap stays flat
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        if (mode == ExecutionMode.VIRTUAL) {
+                            fetchAndProcess(input, outputDir, formType, ndjson, csv, cache, report, parsing);
+                        } else {
+                            processOne(input, input.path, outputDir, formType, ndjson, csv, cache, report);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(maxInFlight);
+        } finally {
+            pool.shutdown();
+        }
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    // The copy to local scratch happens without a parse slot, so slow reads overlap with other documents' parsing
+    private static void fetchAndProcess(BatchInput input, Path outputDir, FormType formType, NdjsonWriter ndjson,
+                                        CsvExporter csv, ResultCache cache, BatchReport report, Semaphore parsing) {
+        Path local = null;
+        try {
+            local = Files.createTempFile("batch-", ".docx");
+            Files.copy(input.path, local, StandardCopyOption.REPLACE_EXISTING);
+            parsing.acquireUninterruptibly();
+            try {
+                processOne(input, local, outputDir, formType, ndjson, csv, cache, report);
+            } finally {
+                parsing.release();
+            }
+        } catch (Exception e) {
+            // Same per-document reporting as processOne, which records its own failures
+            report.recordFailure(input.path, e);
+            writeError(input, outputDir, e);
+        } finally {
+            if (local != null) {
+                try {
+                    Files.deleteIfExists(local);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}: {}", local, e.getMessage());
+                }
+            }
+        }
+    }
+
+    // source is where the document is read from: input.path itself, or a local copy of it
+    private static void processOne(BatchInput input, Path source, Path outputDir, FormType requestedForm,
+                                   NdjsonWriter ndjson, CsvExporter csv, ResultCache cache, BatchReport report) {
+        long start = System.nanoTime();
+        Path target = outputDir.resolve(input.outputName + ".json");
+        try {
+            FormType formType = requestedForm != null ? requestedForm : FormSniffer.detect(source);
+            if (formType == null) throw new IOException("Not a recognised form: " + input.path);
+            NdjsonWriter.DocumentWriter body;
+            CompactResult row = null;
+            if (cache != null) {
+                byte[] json = cache.getOrExtract(formType, source);
+                body = generator -> JsonOutput.copy(json, generator);
+                if (csv != null) row = CompactResult.of(JsonOutput.readMap(json));
+            } else if (csv != null) {
+                // One extraction serves both outputs
+                CompactResult result = formType.extractCompact(source);
+                body = result::writeJson;
+                row = result;
+            } else {
+                body = generator -> formType.writeJson(source, generator);
+            }
+            if (ndjson != null) {
+                ndjson.write(generator -> writeDocument(input, body, generator));
+            } else {
+                Files.createDirectories(target.getParent());
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target));
+                     JsonGenerator generator = JsonOutput.createGenerator(out, true)) {
+                    body.write(generator);
+                }
+            }
+            if (row != null) csv.append(input.outputName, row);
+            report.recordSuccess(System.nanoTime() - start);
+        } catch (Exception e) {
+            report.recordFailure(input.path, e);
+            if (ndjson == null) {
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException ignored) {
+                }
+            }
+            writeError(input, outputDir, e);
+        }
+    }
+
+    private static void writeDocument(BatchInput input, NdjsonWriter.DocumentWriter body, JsonGenerator generator)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("file", input.outputName);
+        generator.writeFieldName("data");
+        body.write(generator);
+        generator.writeEndObject();
+    }
+
+    private static void writeError(BatchInput input, Path outputDir, Exception e) {
+        Path target = outputDir.resolve(input.outputName + ".error.json");
+        LinkedHashMap<String, Object> error = new LinkedHashMap<>();
+        error.put("file", input.path.toString());
+        error.put("error", e.getClass().getName());
+        error.put("message", e.getMessage());
+        try {
+            Files.createDirectories(target.getParent());
+            try (OutputStream out = Files.newOutputStream(target)) {
+                JsonOutput.prettyWriter().writeValue(out, error);
+            }
+        } catch (IOException io) {
+            log.error("Could not write error report for {}: {}", input.path, io.getMessage());
+        }
+    }
+
+    public static final class BatchInput {
+        final Path path;
+        final String outputName;
+
+        public BatchInput(Path path, String outputName) {
+            this.path = path;
+            this.outputName = outputName;
+        }
+    }
+}
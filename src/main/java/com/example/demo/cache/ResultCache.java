@@ -0,0 +1,184 @@
+package com.example.demo.cache;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.demo.parser.DocumentExtractor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extraction results keyed by SHA-256 of the document, parser id and parser version. Results are held as compact
+ * JSON: an in-memory LRU tier bounded by total bytes, and an optional directory of JSON files that survives
+ * restarts. A hit never opens the document. As a MeterBinder bean its counters show up in Actuator's metrics.
+ */
+public final class ResultCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultCache.class);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxMemoryBytes;
+    private final Path diskDir;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // diskDir may be null to keep the cache in memory only
+    public ResultCache(long maxMemoryBytes, Path diskDir) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.diskDir = diskDir;
+        if (diskDir != null) {
+            Files.createDirectories(diskDir);
+        }
+    }
+
+    public static String key(DocumentExtractor extractor, Path document) throws IOException {
+        return extractor.getId() + "-v" + extractor.getVersion() + "-" + sha256(document);
+    }
+
+    public byte[] getOrExtract(DocumentExtractor extractor, Path document) throws IOException {
+        String key = key(extractor, document);
+        byte[] json = get(key);
+        if (json == null) {
+            json = extractor.extractJson(document);
+            put(key, json);
+        }
+        return json;
+    }
+
+    public byte[] get(String key) {
+        synchronized (memory) {
+            byte[] json = memory.get(key);
+            if (json != null) {
+                memoryHits.increment();
+                return json;
+            }
+        }
+        if (diskDir != null) {
+            Path file = diskDir.resolve(key + ".json");
+            if (Files.isRegularFile(file)) {
+                try {
+                    byte[] json = Files.readAllBytes(file);
+                    diskHits.increment();
+                    putInMemory(key, json);
+                    return json;
+                } catch (IOException e) {
+                    log.warn("Ignoring unreadable cache entry {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, byte[] json) {
+        putInMemory(key, json);
+        if (diskDir != null) {
+            Path file = diskDir.resolve(key + ".json");
+            try {
+                // Write then rename, so concurrent readers never see a half-written entry
+                Path temp = Files.createTempFile(diskDir, key, ".tmp");
+                Files.write(temp, json);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Could not write cache entry {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void putInMemory(String key, byte[] json) {
+        if (json.length > maxMemoryBytes) return;
+        synchronized (memory) {
+            byte[] previous = memory.put(key, json);
+            memoryBytes += json.length - (previous == null ? 0 : previous.length);
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getMemoryEntries() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("extraction.cache", this, ResultCache::getMemoryHits)
+                .tag("result", "memory-hit")
+                .register(registry);
+        FunctionCounter.builder("extraction.cache", this, ResultCache::getDiskHits)
+                .tag("result", "disk-hit")
+                .register(registry);
+        FunctionCounter.builder("extraction.cache", this, ResultCache::getMisses)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("extraction.cache.memory.entries", this, ResultCache::getMemoryEntries)
+                .register(registry);
+        Gauge.builder("extraction.cache.memory.bytes", this, ResultCache::getMemoryBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public String summary() {
+        return String.format("[INFO] Result cache: %d memory hits, %d disk hits, %d misses (%d entries, %d KB in memory)",
+                getMemoryHits(), getDiskHits(), getMisses(), getMemoryEntries(), getMemoryBytes() / 1024);
+    }
+
+    static String sha256(Path document) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(document)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
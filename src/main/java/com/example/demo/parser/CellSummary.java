@@ -0,0 +1,102 @@
+package com.example.demo.parser;
+
+import java.util.*;
+
+import org.apache.poi.xwpf.usermodel.*;
+
+/**
+ * Everything the Word form rules need from one table cell, gathered in a single pass over its content: the cell
+ * text, the paragraphs that mark a mandatory label, and the content-control values. Both the XWPF and the StAX
+ * engine build one per cell, so the label/value rules only exist once.
+ */
+final class CellSummary {
+
+    // Concatenated paragraph text, like XWPFTableCell#getText
+    final String text;
+    // First block-level content control with a usable value, or null
+    final String sdtValue;
+    // Trimmed paragraph texts ending in '*'
+    private final List<String> mandatoryLines;
+    // Value candidates in the order extractAllSDTValues used: block content controls first, then per paragraph
+    // its inline content controls followed by the paragraph text
+    private final List<String> blockSdtTexts;
+    private final List<String> paragraphCandidates;
+
+    private CellSummary(Builder builder) {
+        this.text = builder.text.toString();
+        this.sdtValue = builder.sdtValue;
+        this.mandatoryLines = builder.mandatoryLines;
+        this.blockSdtTexts = builder.blockSdtTexts;
+        this.paragraphCandidates = builder.paragraphCandidates;
+    }
+
+    static CellSummary of(XWPFTableCell cell) {
+        Builder builder = new Builder();
+        for (IBodyElement element : cell.getBodyElements()) {
+            if (element instanceof XWPFParagraph) {
+                XWPFParagraph paragraph = (XWPFParagraph) element;
+                for (IRunElement run : paragraph.getIRuns()) {
+                    if (run instanceof XWPFSDT) {
+                        builder.addInlineSdt(((XWPFSDT) run).getContent().getText());
+                    }
+                }
+                builder.addParagraph(paragraph.getText());
+            } else if (element instanceof XWPFSDT) {
+                builder.addBlockSdt(((XWPFSDT) element).getContent().getText());
+            }
+        }
+        return builder.build();
+    }
+
+    boolean isMandatory(String line) {
+        return mandatoryLines.contains(line);
+    }
+
+    // Distinct usable values, as the tab-separated heading rows consume them
+    List<String> values() {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String value : blockSdtTexts) {
+            if (WordFormParser.isValidValue(value)) unique.add(value);
+        }
+        for (String value : paragraphCandidates) {
+            if (WordFormParser.isValidValue(value)) unique.add(value);
+        }
+        return new ArrayList<>(unique);
+    }
+
+    static final class Builder {
+        private final StringBuilder text = new StringBuilder();
+        private String sdtValue;
+        private List<String> mandatoryLines = Collections.emptyList();
+        private final List<String> blockSdtTexts = new ArrayList<>(1);
+        private final List<String> paragraphCandidates = new ArrayList<>(2);
+
+        // Inline content controls of a paragraph are added before the paragraph itself
+        Builder addInlineSdt(String sdtText) {
+            paragraphCandidates.add(sdtText.trim());
+            return this;
+        }
+
+        Builder addParagraph(CharSequence paragraphText) {
+            text.append(paragraphText);
+            String trimmed = paragraphText.toString().trim();
+            if (trimmed.endsWith("*")) {
+                if (mandatoryLines.isEmpty()) mandatoryLines = new ArrayList<>(1);
+                mandatoryLines.add(trimmed);
+            }
+            paragraphCandidates.add(trimmed);
+            return this;
+        }
+
+        Builder addBlockSdt(String sdtText) {
+            String trimmed = sdtText.trim();
+            blockSdtTexts.add(trimmed);
+            if (sdtValue == null && WordFormParser.isValidValue(trimmed)) sdtValue = trimmed;
+            return this;
+        }
+
+        CellSummary build() {
+            return new CellSummary(this);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.util.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Column-wise form of an extraction result, for holding or aggregating many documents at once. Every leaf of the
+ * result map is a column addressed by its key path. Documents with the same layout share one interned
+ * {@link Schema} of those paths, so each result only carries its value array and a bitset marking the values that
+ * were wrapped as {"value": ..., "mandatory": true}. {@link #toMap()} and {@link #writeJson(JsonGenerator)} give
+ * back the usual shape.
+ */
+public final class CompactResult {
+
+    private static final TemplateRegistry<Schema> SCHEMAS = new TemplateRegistry<>(256);
+    // Stands in for an empty nested section, which has no leaves of its own
+    private static final Object EMPTY_SECTION = new Object();
+
+    private final Schema schema;
+    private final Object[] values;
+    private final BitSet mandatory;
+
+    private CompactResult(Schema schema, Object[] values, BitSet mandatory) {
+        this.schema = schema;
+        this.values = values;
+        this.mandatory = mandatory;
+    }
+
+    public static CompactResult of(Map<String, ?> result) {
+        List<String[]> paths = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        BitSet mandatory = new BitSet();
+        collect(result, new String[0], paths, values, mandatory);
+        return new CompactResult(intern(new Schema(paths.toArray(new String[0][]))), values.toArray(), mandatory);
+    }
+
+    private static void collect(Map<?, ?> map, String[] prefix, List<String[]> paths, List<Object> values,
+                                BitSet mandatory) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String[] path = Arrays.copyOf(prefix, prefix.length + 1);
+            path[prefix.length] = String.valueOf(entry.getKey());
+            Object value = entry.getValue();
+            if (isMandatoryWrapper(value)) {
+                mandatory.set(values.size());
+                value = ((Map<?, ?>) value).get("value");
+            } else if (value instanceof Map) {
+                Map<?, ?> section = (Map<?, ?>) value;
+                if (!section.isEmpty()) {
+                    collect(section, path, paths, values, mandatory);
+                    continue;
+                }
+                value = EMPTY_SECTION;
+            }
+            paths.add(path);
+            values.add(value);
+        }
+    }
+
+    private static boolean isMandatoryWrapper(Object value) {
+        if (!(value instanceof Map)) return false;
+        Map<?, ?> map = (Map<?, ?>) value;
+        return map.size() == 2 && map.containsKey("value") && Boolean.TRUE.equals(map.get("mandatory"));
+    }
+
+    // Same layout, same schema instance; a fingerprint collision just keeps the new schema unshared
+    private static Schema intern(Schema schema) {
+        LayoutFingerprint fingerprint = new LayoutFingerprint();
+        for (String[] path : schema.paths) {
+            fingerprint.add(path.length);
+            for (String key : path) {
+                fingerprint.add(key);
+            }
+        }
+        Schema shared = SCHEMAS.get(fingerprint.value());
+        if (shared == null) {
+            SCHEMAS.register(fingerprint.value(), schema);
+            return schema;
+        }
+        return shared.equals(schema) ? shared : schema;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    // The unwrapped leaf value; an empty section reads as an empty map
+    public Object get(int column) {
+        Object value = values[column];
+        return value == EMPTY_SECTION ? new LinkedHashMap<String, Object>() : value;
+    }
+
+    public boolean isMandatory(int column) {
+        return mandatory.get(column);
+    }
+
+    @SuppressWarnings("unchecked")
+    public LinkedHashMap<String, Object> toMap() {
+        LinkedHashMap<String, Object> root = new LinkedHashMap<>();
+        for (int column = 0; column < values.length; column++) {
+            String[] path = schema.paths[column];
+            LinkedHashMap<String, Object> parent = root;
+            for (int depth = 0; depth < path.length - 1; depth++) {
+                parent = (LinkedHashMap<String, Object>) parent.computeIfAbsent(path[depth],
+                        key -> new LinkedHashMap<String, Object>());
+            }
+            Object value = get(column);
+            if (mandatory.get(column)) {
+                LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
+                valObj.put("value", value);
+                valObj.put("mandatory", true);
+                value = valObj;
+            }
+            parent.put(path[path.length - 1], value);
+        }
+        return root;
+    }
+
+    // Writes the same JSON as toMap() would serialize to, straight from the columns
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        List<String> open = new ArrayList<>();
+        for (int column = 0; column < values.length; column++) {
+            String[] path = schema.paths[column];
+            int common = 0;
+            while (common < open.size() && common < path.length - 1 && open.get(common).equals(path[common])) {
+                common++;
+            }
+            while (open.size() > common) {
+                generator.writeEndObject();
+                open.remove(open.size() - 1);
+            }
+            while (open.size() < path.length - 1) {
+                generator.writeFieldName(path[open.size()]);
+                generator.writeStartObject();
+                open.add(path[open.size()]);
+            }
+            generator.writeFieldName(path[path.length - 1]);
+            if (mandatory.get(column)) {
+                generator.writeStartObject();
+                generator.writeFieldName("value");
+                writeValue(values[column], generator);
+                generator.writeBooleanField("mandatory", true);
+                generator.writeEndObject();
+            } else {
+                writeValue(values[column], generator);
+            }
+        }
+        for (int i = 0; i < open.size(); i++) {
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeValue(Object value, JsonGenerator generator) throws IOException {
+        if (value == EMPTY_SECTION) {
+            generator.writeStartObject();
+            generator.writeEndObject();
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * The key paths of a result's leaves, in document order. Immutable and shared by all results of one layout.
+     */
+    public static final class Schema {
+        private final String[][] paths;
+        private final int hash;
+
+        private Schema(String[][] paths) {
+            this.paths = paths;
+            this.hash = Arrays.deepHashCode(paths);
+        }
+
+        public int size() {
+            return paths.length;
+        }
+
+        public List<String> path(int column) {
+            return Collections.unmodifiableList(Arrays.asList(paths[column]));
+        }
+
+        // Column of the leaf at the given key path, or -1
+        public int indexOf(String... path) {
+            for (int column = 0; column < paths.length; column++) {
+                if (Arrays.equals(paths[column], path)) return column;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Schema && hash == ((Schema) o).hash && Arrays.deepEquals(paths, ((Schema) o).paths);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
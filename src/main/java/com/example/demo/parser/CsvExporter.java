@@ -0,0 +1,186 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Columnar export of extraction results for loading into a warehouse: one row per document, one column per
+ * flattened key, written as CSV in row groups. Each group of rowGroupSize documents becomes its own part file
+ * (prefix-00000.csv, prefix-00001.csv, ...), so only one group is ever held in memory, as {@link CompactResult}s.
+ * Columns keep one order for the whole export: a column is added after all earlier ones when first seen, so every
+ * part's header is a prefix of the next one's, and prefix-header.csv holds the header of all columns so far. Loaded
+ * with that header, every part fits one table, its missing trailing cells being empty. Nested keys are joined with
+ * '.', a '.' or '\' within a key being escaped with '\'. A column that carried a mandatory flag gets a boolean
+ * "column__mandatory" column, beside it if both appear in the same part. Safe to share between worker threads.
+ */
+public final class CsvExporter implements Closeable {
+
+    public static final int DEFAULT_ROW_GROUP_SIZE = 10_000;
+
+    private final Path directory;
+    private final String prefix;
+    private final int rowGroupSize;
+    private final List<String> files = new ArrayList<>();
+    private final List<CompactResult> rows = new ArrayList<>();
+    // Columns of every part so far: the cell names, the union index of each value column, and the cell of each value
+    // column and its mandatory flag (-1 while it has none)
+    private final List<String> cellNames = new ArrayList<>(Collections.singletonList("file"));
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private final List<Integer> valueCells = new ArrayList<>();
+    private final List<Integer> flagCells = new ArrayList<>();
+    private int parts;
+
+    public CsvExporter(Path directory, String prefix, int rowGroupSize) throws IOException {
+        if (rowGroupSize <= 0) throw new IllegalArgumentException("Row group size must be positive: " + rowGroupSize);
+        this.directory = Files.createDirectories(directory);
+        this.prefix = prefix;
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    public synchronized void append(String file, CompactResult result) throws IOException {
+        files.add(file);
+        rows.add(result);
+        if (rows.size() >= rowGroupSize) {
+            flush();
+        }
+    }
+
+    public void append(String file, Map<String, ?> result) throws IOException {
+        append(file, CompactResult.of(result));
+    }
+
+    // Writes the buffered rows as the next part file, even if the group is not full yet
+    public synchronized void flush() throws IOException {
+        if (rows.isEmpty()) return;
+        Path target = directory.resolve(String.format("%s-%05d.csv", prefix, parts));
+        // Written aside and moved into place, so a loader watching the directory never picks up a partial part
+        Path partial = directory.resolve(target.getFileName() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(partial),
+                StandardCharsets.UTF_8))) {
+            writeGroup(out);
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        writeHeader();
+        parts++;
+        files.clear();
+        rows.clear();
+    }
+
+    public synchronized int getParts() {
+        return parts;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+    }
+
+    private void writeGroup(Writer out) throws IOException {
+        // Documents of one layout share a schema, so each schema is mapped once per group
+        Map<CompactResult.Schema, int[]> mappings = new IdentityHashMap<>();
+        int known = valueCells.size();
+        BitSet flagged = new BitSet();
+        for (CompactResult row : rows) {
+            int[] mapping = mappings.computeIfAbsent(row.getSchema(), this::mapColumns);
+            for (int column = 0; column < row.size(); column++) {
+                if (row.isMandatory(column)) flagged.set(mapping[column]);
+            }
+        }
+        // New columns in first-seen order, each with its flag beside it; new flags of known columns go last
+        List<String> names = new ArrayList<>(columnIndex.size());
+        names.addAll(Collections.nCopies(columnIndex.size(), null));
+        columnIndex.forEach((name, u) -> names.set(u, name));
+        for (int u = known; u < names.size(); u++) {
+            valueCells.add(cellNames.size());
+            cellNames.add(names.get(u));
+            flagCells.add(flagged.get(u) ? addCell(names.get(u) + "__mandatory") : -1);
+        }
+        for (int u = flagged.nextSetBit(0); u >= 0 && u < known; u = flagged.nextSetBit(u + 1)) {
+            if (flagCells.get(u) < 0) flagCells.set(u, addCell(names.get(u) + "__mandatory"));
+        }
+        writeRecord(out, cellNames.toArray(new String[0]));
+        for (int r = 0; r < rows.size(); r++) {
+            CompactResult row = rows.get(r);
+            int[] mapping = mappings.get(row.getSchema());
+            String[] cells = new String[cellNames.size()];
+            cells[0] = files.get(r);
+            for (int flagCell : flagCells) {
+                if (flagCell >= 0) cells[flagCell] = "false";
+            }
+            for (int column = 0; column < row.size(); column++) {
+                int u = mapping[column];
+                cells[valueCells.get(u)] = text(row.get(column));
+                if (row.isMandatory(column)) cells[flagCells.get(u)] = "true";
+            }
+            writeRecord(out, cells);
+        }
+    }
+
+    private int addCell(String name) {
+        cellNames.add(name);
+        return cellNames.size() - 1;
+    }
+
+    private int[] mapColumns(CompactResult.Schema schema) {
+        int[] mapping = new int[schema.size()];
+        for (int column = 0; column < schema.size(); column++) {
+            mapping[column] = columnIndex.computeIfAbsent(columnName(schema.path(column)),
+                    name -> columnIndex.size());
+        }
+        return mapping;
+    }
+
+    // Path segments joined with '.'; a '.' or '\' within a segment is escaped, so "a.b" and a nested a/b differ
+    static String columnName(List<String> path) {
+        StringBuilder name = new StringBuilder();
+        for (String segment : path) {
+            if (name.length() > 0) name.append('.');
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c == '.' || c == '\\') name.append('\\');
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    // The header of every column so far, replaced after each part
+    private void writeHeader() throws IOException {
+        Path target = directory.resolve(prefix + "-header.csv");
+        Path partial = directory.resolve(target.getFileName() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(partial),
+                StandardCharsets.UTF_8))) {
+            writeRecord(out, cellNames.toArray(new String[0]));
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String text(Object value) throws IOException {
+        if (value == null) return null;
+        if (value instanceof String) return (String) value;
+        if (value instanceof Boolean || value instanceof Number) return value.toString();
+        // An empty nested section
+        if (value instanceof Map && ((Map<?, ?>) value).isEmpty()) return null;
+        return JsonOutput.compactWriter().writeValueAsString(value);
+    }
+
+    // RFC 4180: fields with separators, quotes or line breaks are quoted, and quotes doubled
+    private static void writeRecord(Writer out, String[] cells) throws IOException {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) out.write(',');
+            String cell = cells[i];
+            if (cell == null) continue;
+            if (cell.indexOf(',') >= 0 || cell.indexOf('"') >= 0 || cell.indexOf('\n') >= 0
+                    || cell.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(cell.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(cell);
+            }
+        }
+        out.write("\r\n");
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A configured form parser. Implementations are immutable and thread-safe, with their rule tables, patterns and
+ * vocabularies loaded once, so a single instance can be shared by every thread in the JVM.
+ */
+public interface DocumentExtractor {
+
+    // Stable identifier, used in cache keys and on the command line
+    String getId();
+
+    // Bump when a parser change alters its output, so cached results from the old version are no longer used
+    int getVersion();
+
+    LinkedHashMap<String, Object> extract(InputStream in) throws IOException;
+
+    // Opens the document from the file itself, so only the parts being parsed are held in memory
+    LinkedHashMap<String, Object> extract(Path document) throws IOException;
+
+    // Projection onto the given top-level output keys. Implementations may skip the parts of the document that
+    // cannot produce them and stop once they are all resolved; this fallback extracts everything and filters.
+    default LinkedHashMap<String, Object> extract(InputStream in, Set<String> wantedKeys) throws IOException {
+        LinkedHashMap<String, Object> result = extract(in);
+        result.keySet().retainAll(wantedKeys);
+        return result;
+    }
+
+    default LinkedHashMap<String, Object> extract(Path document, Set<String> wantedKeys) throws IOException {
+        LinkedHashMap<String, Object> result = extract(document);
+        result.keySet().retainAll(wantedKeys);
+        return result;
+    }
+
+    void writeJson(InputStream in, JsonGenerator generator) throws IOException;
+
+    void writeJson(Path document, JsonGenerator generator) throws IOException;
+
+    // Compact JSON bytes of the whole result, e.g. for caching
+    default byte[] extractJson(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        try (JsonGenerator generator = JsonOutput.createGenerator(out, false)) {
+            writeJson(in, generator);
+        }
+        return out.toByteArray();
+    }
+
+    default byte[] extractJson(Path document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        try (JsonGenerator generator = JsonOutput.createGenerator(out, false)) {
+            writeJson(document, generator);
+        }
+        return out.toByteArray();
+    }
+
+    // Column-wise result for holding many documents in memory; results of one layout share their key schema
+    default CompactResult extractCompact(InputStream in) throws IOException {
+        return CompactResult.of(extract(in));
+    }
+
+    default CompactResult extractCompact(Path document) throws IOException {
+        return CompactResult.of(extract(document));
+    }
+}
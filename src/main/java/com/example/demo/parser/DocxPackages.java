@@ -0,0 +1,41 @@
+package com.example.demo.parser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+/**
+ * Opens DOCX packages straight from a file. POI then reads zip entries on demand through random access instead of
+ * inflating the whole package into memory, as it does for an InputStream. Packages are read-only and must be
+ * released with {@link OPCPackage#revert()} (closing an XWPFDocument built on one does that).
+ */
+final class DocxPackages {
+
+    private DocxPackages() {
+    }
+
+    static OPCPackage openReadOnly(Path file) throws IOException {
+        try {
+            return OPCPackage.open(file.toFile(), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Not a valid DOCX package: " + file, e);
+        }
+    }
+
+    // A document on a read-only package; if POI cannot build it, the package is reverted before the failure propagates
+    static XWPFDocument openDocument(Path file) throws IOException {
+        OPCPackage pkg = openReadOnly(file);
+        boolean opened = false;
+        try {
+            XWPFDocument document = new XWPFDocument(pkg);
+            opened = true;
+            return document;
+        } finally {
+            if (!opened) pkg.revert();
+        }
+    }
+}
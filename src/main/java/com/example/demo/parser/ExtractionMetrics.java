@@ -0,0 +1,242 @@
+package com.example.demo.parser;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.search.Search;
+
+/**
+ * Micrometer meters for one form's parser, registered on {@link Metrics#globalRegistry}. Spring Boot adds its
+ * registry there, so Actuator's metrics endpoint shows them; the batch runner adds a SimpleMeterRegistry and prints
+ * {@link #summary(MeterRegistry)}. Stage times and field counts are gathered per document on the parsing thread and
+ * recorded once the document is done, so the rules only touch a thread-local.
+ */
+public final class ExtractionMetrics {
+
+    public enum Stage {
+        OPEN,
+        LAYOUT,
+        TABLES,
+        ACROFORM,
+        TEXT,
+        FLATTEN,
+        SERIALIZE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final Map<String, ExtractionMetrics> FORMS = new ConcurrentHashMap<>();
+
+    private final String form;
+    private final Timer document;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Timer[] stages = new Timer[Stage.values().length];
+    private final Counter fields;
+    private final DistributionSummary fieldsPerDocument;
+    private final Counter rejected;
+    private final Counter mandatoryMissing;
+    private final ThreadLocal<DocumentStats> current = new ThreadLocal<>();
+
+    private ExtractionMetrics(String form) {
+        MeterRegistry registry = Metrics.globalRegistry;
+        this.form = form;
+        this.document = Timer.builder("extraction.document")
+                .description("Time to extract one document, from opening it to the last field")
+                .tag("form", form)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.succeeded = documents(registry, "success");
+        this.failed = documents(registry, "failure");
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = Timer.builder("extraction.stage")
+                    .tag("form", form)
+                    .tag("stage", stage.tag)
+                    .register(registry);
+        }
+        this.fields = Counter.builder("extraction.fields")
+                .description("Fields extracted")
+                .tag("form", form)
+                .register(registry);
+        this.fieldsPerDocument = DistributionSummary.builder("extraction.fields.per.document")
+                .tag("form", form)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejected = Counter.builder("extraction.values.rejected")
+                .description("Values dropped as placeholders or empty")
+                .tag("form", form)
+                .register(registry);
+        this.mandatoryMissing = Counter.builder("extraction.mandatory.missing")
+                .description("Mandatory fields without a value")
+                .tag("form", form)
+                .register(registry);
+    }
+
+    private Counter documents(MeterRegistry registry, String outcome) {
+        return Counter.builder("extraction.documents")
+                .tag("form", form)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public static ExtractionMetrics forForm(String form) {
+        return FORMS.computeIfAbsent(form, ExtractionMetrics::new);
+    }
+
+    // JSON field writer that books its time as serialization
+    FieldSink serializing(JsonGenerator generator) {
+        FieldSink json = JsonOutput.fieldWriter(generator);
+        return (key, value) -> {
+            long start = System.nanoTime();
+            json.accept(key, value);
+            stage(Stage.SERIALIZE, start);
+        };
+    }
+
+    // Nested begin/end pairs on the same thread count as one document
+    public void begin() {
+        DocumentStats stats = current.get();
+        if (stats != null) {
+            stats.depth++;
+        } else {
+            current.set(new DocumentStats());
+        }
+    }
+
+    public void end(boolean success) {
+        DocumentStats stats = current.get();
+        if (stats == null || --stats.depth > 0) return;
+        current.remove();
+        document.record(System.nanoTime() - stats.startNanos, TimeUnit.NANOSECONDS);
+        (success ? succeeded : failed).increment();
+        for (Stage stage : Stage.values()) {
+            long nanos = stats.stageNanos[stage.ordinal()];
+            if (nanos > 0) stages[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        }
+        if (success) {
+            fields.increment(stats.fields);
+            fieldsPerDocument.record(stats.fields);
+        }
+        if (stats.rejected > 0) rejected.increment(stats.rejected);
+        if (stats.mandatoryMissing > 0) mandatoryMissing.increment(stats.mandatoryMissing);
+    }
+
+    // Wraps part of the current document's work for another thread. Whatever the task records there is added to
+    // this thread's document when it finishes, so the stats of a document split over a pool stay complete.
+    <T> Callable<T> forked(Callable<T> task) {
+        DocumentStats document = current.get();
+        if (document == null) return task;
+        return () -> {
+            DocumentStats previous = current.get();
+            DocumentStats part = new DocumentStats();
+            current.set(part);
+            try {
+                return task.call();
+            } finally {
+                if (previous != null) {
+                    current.set(previous);
+                } else {
+                    current.remove();
+                }
+                document.add(part);
+            }
+        };
+    }
+
+    // Adds the time since startNanos to the stage; outside begin/end this is a no-op
+    public void stage(Stage stage, long startNanos) {
+        stageNanos(stage, System.nanoTime() - startNanos);
+    }
+
+    public void stageNanos(Stage stage, long nanos) {
+        DocumentStats stats = current.get();
+        if (stats != null) stats.stageNanos[stage.ordinal()] += nanos;
+    }
+
+    public void fieldExtracted() {
+        DocumentStats stats = current.get();
+        if (stats != null) stats.fields++;
+    }
+
+    public void valueRejected() {
+        DocumentStats stats = current.get();
+        if (stats != null) stats.rejected++;
+    }
+
+    public void mandatoryMissing() {
+        DocumentStats stats = current.get();
+        if (stats != null) stats.mandatoryMissing++;
+    }
+
+    // Route a document took through a parser with more than one, such as the PDF parser's AcroForm-first paths
+    public void path(String path) {
+        Counter.builder("extraction.path")
+                .tag("form", form)
+                .tag("path", path)
+                .register(Metrics.globalRegistry)
+                .increment();
+    }
+
+    // One block per form that extracted anything, for the end of a CLI run
+    public static String summary(MeterRegistry registry) {
+        StringBuilder out = new StringBuilder();
+        for (ExtractionMetrics metrics : new TreeMap<>(FORMS).values()) {
+            Timer document = registry.find("extraction.document").tag("form", metrics.form).timer();
+            if (document == null || document.count() == 0) continue;
+            if (out.length() > 0) out.append(System.lineSeparator());
+            out.append(String.format("[INFO] Extraction %s: %d documents (%.0f failed), mean %.1f ms, max %.1f ms,"
+                            + " %.0f fields, %.0f values rejected, %.0f mandatory missing",
+                    metrics.form, document.count(), count(registry, "extraction.documents", metrics.form, "outcome",
+                            "failure"),
+                    document.mean(TimeUnit.MICROSECONDS) / 1000.0, document.max(TimeUnit.MICROSECONDS) / 1000.0,
+                    count(registry, "extraction.fields", metrics.form, null, null),
+                    count(registry, "extraction.values.rejected", metrics.form, null, null),
+                    count(registry, "extraction.mandatory.missing", metrics.form, null, null)));
+            for (Stage stage : Stage.values()) {
+                Timer timer = registry.find("extraction.stage").tag("form", metrics.form).tag("stage", stage.tag)
+                        .timer();
+                if (timer == null || timer.count() == 0) continue;
+                out.append(System.lineSeparator()).append(String.format("[INFO]   %-9s total %.1f ms, mean %.2f ms",
+                        stage.tag, timer.totalTime(TimeUnit.MICROSECONDS) / 1000.0,
+                        timer.mean(TimeUnit.MICROSECONDS) / 1000.0));
+            }
+            for (Counter path : registry.find("extraction.path").tag("form", metrics.form).counters()) {
+                out.append(System.lineSeparator()).append(String.format("[INFO]   path %-13s %.0f documents",
+                        path.getId().getTag("path"), path.count()));
+            }
+        }
+        return out.toString();
+    }
+
+    private static double count(MeterRegistry registry, String name, String form, String tagKey, String tagValue) {
+        Search search = registry.find(name).tag("form", form);
+        if (tagKey != null) search = search.tag(tagKey, tagValue);
+        Counter counter = search.counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static final class DocumentStats {
+        final long startNanos = System.nanoTime();
+        final long[] stageNanos = new long[Stage.values().length];
+        int depth = 1;
+        int fields;
+        int rejected;
+        int mandatoryMissing;
+
+        // Parts finish on different threads; the document's own thread only reads the totals after joining them
+        synchronized void add(DocumentStats part) {
+            for (int i = 0; i < stageNanos.length; i++) {
+                stageNanos[i] += part.stageNanos[i];
+            }
+            fields += part.fields;
+            rejected += part.rejected;
+            mandatoryMissing += part.mandatoryMissing;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.demo.parser;
+
+/**
+ * Receives output fields in document order, either into a result map ({@code map::put}) or straight onto a
+ * JSON generator (see {@link JsonOutput#fieldWriter}).
+ */
+@FunctionalInterface
+interface FieldSink {
+
+    void accept(String key, Object value);
+}
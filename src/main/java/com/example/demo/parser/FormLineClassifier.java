@@ -0,0 +1,197 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classifies form text lines against a keyword vocabulary (table boundaries, grouping/instruction text, label
+ * prefixes and trailing grouping words) with one automaton pass per line. Vocabularies are read from
+ * {@code form-vocabulary.properties}, so a new form layout only needs new entries there.
+ */
+public final class FormLineClassifier {
+
+    public static final int TABLE_BOUNDARY = 1;
+    public static final int GROUPING_OR_INSTRUCTION = 1 << 1;
+
+    private static final String VOCABULARY_RESOURCE = "form-vocabulary.properties";
+
+    private static final int TABLE_BOUNDARY_PREFIX = 0;
+    private static final int INSTRUCTION_PREFIX = 1;
+    private static final int INSTRUCTION_CONTAINS = 2;
+    private static final int GROUPING_WORD = 3;
+    private static final int LABEL_PREFIX = 4;
+    private static final int TRAILING_GROUPING = 5;
+    private static final String[] CATEGORY_KEYS = { "tableBoundary.prefix", "instruction.prefix",
+            "instruction.contains", "groupingWord", "labelPrefix", "trailingGrouping" };
+
+    private static final Map<String, FormLineClassifier> CACHE = new ConcurrentHashMap<>();
+
+    private final KeywordAutomaton automaton;
+    private final String groupingWordQualifier;
+    // Per distinct keyword: bit mask of categories, and its position in each category's ordered list
+    private final int[] categoryMask;
+    private final int[][] categoryOrder;
+    private final int longestKeyword;
+
+    FormLineClassifier(Map<Integer, List<String>> vocabulary, String groupingWordQualifier) {
+        this.groupingWordQualifier = groupingWordQualifier == null ? "" : groupingWordQualifier.toLowerCase();
+        Map<String, Integer> distinct = new LinkedHashMap<>();
+        for (List<String> words : vocabulary.values()) {
+            for (String word : words) {
+                distinct.putIfAbsent(word.toLowerCase(), distinct.size());
+            }
+        }
+        this.automaton = new KeywordAutomaton(new ArrayList<>(distinct.keySet()));
+        this.categoryMask = new int[distinct.size()];
+        this.categoryOrder = new int[CATEGORY_KEYS.length][distinct.size()];
+        this.longestKeyword = distinct.keySet().stream().mapToInt(String::length).max().orElse(0);
+        for (int[] order : categoryOrder) {
+            Arrays.fill(order, -1);
+        }
+        for (Map.Entry<Integer, List<String>> category : vocabulary.entrySet()) {
+            List<String> words = category.getValue();
+            for (int i = 0; i < words.size(); i++) {
+                int k = distinct.get(words.get(i).toLowerCase());
+                categoryMask[k] |= 1 << category.getKey();
+                if (categoryOrder[category.getKey()][k] < 0) {
+                    categoryOrder[category.getKey()][k] = i;
+                }
+            }
+        }
+    }
+
+    public static FormLineClassifier forVocabulary(String name) {
+        return CACHE.computeIfAbsent(name, FormLineClassifier::load);
+    }
+
+    private static FormLineClassifier load(String name) {
+        Properties properties = new Properties();
+        try (InputStream in = FormLineClassifier.class.getClassLoader().getResourceAsStream(VOCABULARY_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException(VOCABULARY_RESOURCE + " not found on classpath");
+            }
+            properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<Integer, List<String>> vocabulary = new LinkedHashMap<>();
+        for (int category = 0; category < CATEGORY_KEYS.length; category++) {
+            String value = properties.getProperty(name + "." + CATEGORY_KEYS[category], "");
+            List<String> words = new ArrayList<>();
+            for (String word : value.split("\\|")) {
+                if (!word.trim().isEmpty()) words.add(word.trim());
+            }
+            vocabulary.put(category, words);
+        }
+        return new FormLineClassifier(vocabulary, properties.getProperty(name + ".groupingWord.qualifier"));
+    }
+
+    public int classify(String line) {
+        String text = line.trim();
+        int length = text.length();
+        int[] flags = new int[1];
+        automaton.scan(text, (k, start, end) -> {
+            int mask = categoryMask[k];
+            if ((mask & (1 << TABLE_BOUNDARY_PREFIX)) != 0 && start == 0) {
+                flags[0] |= TABLE_BOUNDARY;
+            }
+            if ((mask & (1 << INSTRUCTION_CONTAINS)) != 0
+                    || ((mask & (1 << INSTRUCTION_PREFIX)) != 0 && start == 0)
+                    || ((mask & (1 << GROUPING_WORD)) != 0 && isWholeGroupingWord(text, start, end))) {
+                flags[0] |= GROUPING_OR_INSTRUCTION;
+            }
+        });
+        if (length > 0 && text.charAt(0) == '(' && text.charAt(length - 1) == ')') {
+            flags[0] |= GROUPING_OR_INSTRUCTION;
+        }
+        return flags[0];
+    }
+
+    public boolean isTableBoundary(String line) {
+        return (classify(line) & TABLE_BOUNDARY) != 0;
+    }
+
+    public boolean isGroupingOrInstruction(String line) {
+        return (classify(line) & GROUPING_OR_INSTRUCTION) != 0;
+    }
+
+    // Strips leading instruction words ("please", "indicate", ...) in vocabulary order, like a startsWith loop would
+    public String stripLabelPrefixes(String label) {
+        int next = 0;
+        while (true) {
+            int[] best = bestMatch(label, LABEL_PREFIX, next, true);
+            if (best == null) return label;
+            label = label.substring(automaton.keyword(best[0]).length()).trim();
+            next = best[1] + 1;
+        }
+    }
+
+    // Removes trailing grouping words ("details", "device information", ...) in vocabulary order
+    public String stripTrailingGroupings(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        int next = 0;
+        while (true) {
+            int[] best = bestMatch(trimmed, TRAILING_GROUPING, next, false);
+            if (best == null) return trimmed;
+            trimmed = trimmed.substring(0, best[2]).trim();
+            next = best[1] + 1;
+        }
+    }
+
+    // Lowest-ordered keyword of the category at or after minOrder, anchored at the start (prefix) or the end
+    // (suffix); returns {keyword, order, start} or null
+    private int[] bestMatch(String text, int category, int minOrder, boolean prefix) {
+        int length = text.length();
+        int[] best = { -1, Integer.MAX_VALUE, -1 };
+        int from = prefix ? 0 : Math.max(0, length - longestKeyword - 1);
+        int to = prefix ? Math.min(length, longestKeyword) : length;
+        automaton.scan(text, from, to, (k, start, end) -> {
+            if ((categoryMask[k] & (1 << category)) == 0) return;
+            int order = categoryOrder[category][k];
+            if (order < minOrder || order >= best[1]) return;
+            boolean anchored = prefix ? start == 0 : isWordSuffix(text, start, end);
+            if (anchored) {
+                best[0] = k;
+                best[1] = order;
+                best[2] = start;
+            }
+        });
+        return best[0] < 0 ? null : best;
+    }
+
+    // "\bword\b\.?$"
+    private static boolean isWordSuffix(String text, int start, int end) {
+        int length = text.length();
+        if (end != length && !(end == length - 1 && text.charAt(end) == '.')) return false;
+        return isWordBoundary(text, start) && isWordBoundary(text, end);
+    }
+
+    private static boolean isWordBoundary(String text, int index) {
+        boolean before = index > 0 && isWordChar(text.charAt(index - 1));
+        boolean after = index < text.length() && isWordChar(text.charAt(index));
+        return before != after;
+    }
+
+    // "^(qualifier )?(word)[ .:-]*$"
+    private boolean isWholeGroupingWord(String text, int start, int end) {
+        if (start != 0) {
+            if (groupingWordQualifier.isEmpty() || start != groupingWordQualifier.length() + 1
+                    || !text.regionMatches(true, 0, groupingWordQualifier, 0, groupingWordQualifier.length())
+                    || text.charAt(start - 1) != ' ') {
+                return false;
+            }
+        }
+        for (int i = end; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '.' && c != ':' && c != '-') return false;
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
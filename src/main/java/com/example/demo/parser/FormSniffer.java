@@ -0,0 +1,109 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Tells which form a file holds without building its document model: the magic bytes pick the container, the zip
+ * central directory has to list word/document.xml, and the run text of at most the first 16 KB of that part has to
+ * carry one of the forms' fixed title lines. Only that prefix is ever inflated, so routing a document costs a small
+ * fraction of parsing it.
+ */
+public final class FormSniffer {
+
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+    private static final String DOCUMENT_PART = "word/document.xml";
+    private static final int CHUNK_BYTES = 4 * 1024;
+    private static final int MAX_SCAN_BYTES = 16 * 1024;
+
+    // Title lines near the top of each form; NZ is checked first as the more specific one
+    private static final String[] NZ_MARKERS = {"Medical Device Incident Report", "For use by industry"};
+    private static final String[] MDIR_MARKERS = {
+            "All fields marked with an * are mandatory fields (for the Final Report)", "TGA Report Number"};
+
+    private FormSniffer() {
+    }
+
+    public static boolean isPdf(Path file) throws IOException {
+        return startsWith(head(file), PDF_MAGIC);
+    }
+
+    // The Word form in the file, or null if it is not a DOCX or none of the known forms
+    public static FormType detect(Path file) throws IOException {
+        if (!startsWith(head(file), ZIP_MAGIC)) return null;
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            ZipEntry body = zip.getEntry(DOCUMENT_PART);
+            if (body == null) return null;
+            try (InputStream in = zip.getInputStream(body)) {
+                return classify(in);
+            }
+        }
+    }
+
+    // Reads the part a chunk at a time and stops as soon as the text so far names a form
+    static FormType classify(InputStream documentXml) throws IOException {
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream(MAX_SCAN_BYTES);
+        byte[] chunk = new byte[CHUNK_BYTES];
+        while (prefix.size() < MAX_SCAN_BYTES) {
+            int read = documentXml.readNBytes(chunk, 0, Math.min(CHUNK_BYTES, MAX_SCAN_BYTES - prefix.size()));
+            if (read <= 0) break;
+            prefix.write(chunk, 0, read);
+            String text = runText(new String(prefix.toByteArray(), StandardCharsets.UTF_8));
+            if (containsAll(text, NZ_MARKERS)) return FormType.NZ_ADVERSE;
+            if (containsAny(text, MDIR_MARKERS)) return FormType.MDIR;
+        }
+        return null;
+    }
+
+    // Concatenated content of the <w:t> elements; text split over several runs is joined back up
+    static String runText(String xml) {
+        StringBuilder text = new StringBuilder();
+        int at = xml.indexOf("<w:t");
+        while (at >= 0) {
+            int nameEnd = at + 4;
+            if (nameEnd < xml.length() && (xml.charAt(nameEnd) == '>' || xml.charAt(nameEnd) == ' ')) {
+                int tagEnd = xml.indexOf('>', nameEnd);
+                if (tagEnd < 0) break;
+                if (xml.charAt(tagEnd - 1) != '/') {
+                    int textEnd = xml.indexOf('<', tagEnd + 1);
+                    if (textEnd < 0) break;
+                    text.append(xml, tagEnd + 1, textEnd);
+                }
+            }
+            at = xml.indexOf("<w:t", nameEnd);
+        }
+        return text.toString();
+    }
+
+    private static byte[] head(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.readNBytes(PDF_MAGIC.length);
+        }
+    }
+
+    private static boolean startsWith(byte[] head, byte[] magic) {
+        if (head.length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsAll(String text, String[] markers) {
+        for (String marker : markers) {
+            if (!text.contains(marker)) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsAny(String text, String[] markers) {
+        for (String marker : markers) {
+            if (text.contains(marker)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The supported forms, each backed by one shared extractor instance.
+ */
+public enum FormType implements DocumentExtractor {
+
+    MDIR(new WordFormExtractor(WordFormParser.Engine.DOM)),
+    NZ_ADVERSE(new NzFormExtractor());
+
+    private final DocumentExtractor extractor;
+
+    FormType(DocumentExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    public DocumentExtractor getExtractor() {
+        return extractor;
+    }
+
+    @Override
+    public String getId() {
+        return extractor.getId();
+    }
+
+    @Override
+    public int getVersion() {
+        return extractor.getVersion();
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(InputStream in) throws IOException {
+        return extractor.extract(in);
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(Path document) throws IOException {
+        return extractor.extract(document);
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(InputStream in, Set<String> wantedKeys) throws IOException {
+        return extractor.extract(in, wantedKeys);
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(Path document, Set<String> wantedKeys) throws IOException {
+        return extractor.extract(document, wantedKeys);
+    }
+
+    @Override
+    public void writeJson(InputStream in, JsonGenerator generator) throws IOException {
+        extractor.writeJson(in, generator);
+    }
+
+    @Override
+    public void writeJson(Path document, JsonGenerator generator) throws IOException {
+        extractor.writeJson(document, generator);
+    }
+
+    public static FormType fromId(String id) {
+        for (FormType type : values()) {
+            if (type.getId().equalsIgnoreCase(id) || type.name().equalsIgnoreCase(id)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown form type: " + id);
+    }
+}
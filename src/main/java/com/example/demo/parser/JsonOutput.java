@@ -0,0 +1,70 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Shared, thread-safe JSON writers for parser output. Targets are never closed by the writers, so callers can
+ * write to {@code System.out} or to a shared NDJSON stream.
+ */
+public final class JsonOutput {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter COMPACT_WRITER = MAPPER.writer();
+
+    private JsonOutput() {
+    }
+
+    public static ObjectWriter prettyWriter() {
+        return PRETTY_WRITER;
+    }
+
+    public static ObjectWriter compactWriter() {
+        return COMPACT_WRITER;
+    }
+
+    public static JsonGenerator createGenerator(OutputStream out, boolean pretty) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        if (pretty) {
+            generator.useDefaultPrettyPrinter();
+        }
+        return generator;
+    }
+
+    // Re-emits already serialized JSON token by token, so it takes on the target generator's formatting
+    public static void copy(byte[] json, JsonGenerator generator) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(json)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    // Reads serialized output back into the map shape the parsers return
+    @SuppressWarnings("unchecked")
+    public static LinkedHashMap<String, Object> readMap(byte[] json) throws IOException {
+        return MAPPER.readValue(json, LinkedHashMap.class);
+    }
+
+    public static void print(Object value) throws IOException {
+        PRETTY_WRITER.writeValue(System.out, value);
+        System.out.println();
+    }
+
+    // Writes each field as it is produced; IOExceptions surface as UncheckedIOException from the sink
+    static FieldSink fieldWriter(JsonGenerator generator) {
+        return (key, value) -> {
+            try {
+                generator.writeObjectField(key, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
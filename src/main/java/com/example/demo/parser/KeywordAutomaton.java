@@ -0,0 +1,126 @@
+package com.example.demo.parser;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a fixed keyword list. Matching is case-insensitive and reports every keyword
+ * occurrence in a single left-to-right pass. Instances are immutable and safe to share between threads.
+ */
+public final class KeywordAutomaton {
+
+    public interface MatchHandler {
+        void onMatch(int keywordIndex, int start, int end);
+    }
+
+    private final String[] keywords;
+    // Per node: sorted transition chars and their target nodes
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failure;
+    // Keyword ending exactly at the node (-1 if none) and the next node on the failure chain that ends a keyword
+    private final int[] terminal;
+    private final int[] outputLink;
+
+    public KeywordAutomaton(List<String> keywordList) {
+        this.keywords = new String[keywordList.size()];
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminals = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminals.add(-1);
+        for (int k = 0; k < keywordList.size(); k++) {
+            String keyword = keywordList.get(k).toLowerCase();
+            keywords[k] = keyword;
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminals.add(-1);
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            if (terminals.get(node) == -1) {
+                terminals.set(node, k);
+            }
+        }
+
+        int size = trie.size();
+        edgeChars = new char[size][];
+        edgeTargets = new int[size][];
+        terminal = new int[size];
+        for (int n = 0; n < size; n++) {
+            TreeMap<Character, Integer> edges = trie.get(n);
+            edgeChars[n] = new char[edges.size()];
+            edgeTargets[n] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[n][i] = edge.getKey();
+                edgeTargets[n][i] = edge.getValue();
+                i++;
+            }
+            terminal[n] = terminals.get(n);
+        }
+
+        failure = new int[size];
+        outputLink = new int[size];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : edgeTargets[0]) {
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < edgeChars[node].length; i++) {
+                char c = edgeChars[node][i];
+                int child = edgeTargets[node][i];
+                int f = failure[node];
+                while (f != 0 && transition(f, c) < 0) {
+                    f = failure[f];
+                }
+                int fallback = transition(f, c);
+                failure[child] = (fallback >= 0 && fallback != child) ? fallback : 0;
+                int link = failure[child];
+                outputLink[child] = terminal[link] >= 0 ? link : outputLink[link];
+                queue.add(child);
+            }
+        }
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public String keyword(int index) {
+        return keywords[index];
+    }
+
+    public void scan(CharSequence text, MatchHandler handler) {
+        scan(text, 0, text.length(), handler);
+    }
+
+    public void scan(CharSequence text, int from, int to, MatchHandler handler) {
+        int node = 0;
+        for (int i = from; i < to; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = transition(node, c);
+            while (next < 0 && node != 0) {
+                node = failure[node];
+                next = transition(node, c);
+            }
+            node = next < 0 ? 0 : next;
+            for (int out = terminal[node] >= 0 ? node : outputLink[node]; out >= 0; out = outputLink[out]) {
+                int k = terminal[out];
+                handler.onMatch(k, i + 1 - keywords[k].length(), i + 1);
+            }
+        }
+    }
+
+    private int transition(int node, char c) {
+        char[] chars = edgeChars[node];
+        int index = Arrays.binarySearch(chars, c);
+        return index >= 0 ? edgeTargets[node][index] : -1;
+    }
+}
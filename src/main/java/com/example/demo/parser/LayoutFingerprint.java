@@ -0,0 +1,33 @@
+package com.example.demo.parser;
+
+/**
+ * 64-bit FNV-1a hash over a document's structural skeleton: element kinds, table shapes and label text.
+ */
+final class LayoutFingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    LayoutFingerprint add(int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * PRIME;
+        }
+        return this;
+    }
+
+    LayoutFingerprint add(CharSequence text) {
+        add(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return this;
+    }
+
+    long value() {
+        return hash;
+    }
+}
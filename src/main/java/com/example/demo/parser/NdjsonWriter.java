@@ -0,0 +1,49 @@
+package com.example.demo.parser;
+
+import java.io.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Newline-delimited JSON sink for batch runs: one document per line, safe to share between worker threads.
+ * Each document is serialized into a per-thread buffer first, so a failing document never leaves a partial line.
+ */
+public final class NdjsonWriter implements Closeable {
+
+    @FunctionalInterface
+    public interface DocumentWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(64 * 1024));
+
+    private final OutputStream out;
+
+    public NdjsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(DocumentWriter document) throws IOException {
+        ByteArrayOutputStream buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator generator = JsonOutput.createGenerator(buffer, false)) {
+            document.write(generator);
+        }
+        buffer.write('\n');
+        synchronized (out) {
+            buffer.writeTo(out);
+        }
+    }
+
+    public void writeValue(Object value) throws IOException {
+        write(generator -> generator.writeObject(value));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (out) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * NZ adverse event form extractor on top of {@link WordFormParserNZ}.
+ */
+public final class NzFormExtractor implements DocumentExtractor {
+
+    static final int VERSION = 1;
+
+    @Override
+    public String getId() {
+        return "nz";
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(InputStream in) throws IOException {
+        return WordFormParserNZ.extract(() -> new XWPFDocument(in));
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(Path document) throws IOException {
+        return WordFormParserNZ.extract(() -> DocxPackages.openDocument(document));
+    }
+
+    @Override
+    public void writeJson(InputStream in, JsonGenerator generator) throws IOException {
+        WordFormParserNZ.writeJson(() -> new XWPFDocument(in), generator);
+    }
+
+    @Override
+    public void writeJson(Path document, JsonGenerator generator) throws IOException {
+        WordFormParserNZ.writeJson(() -> DocxPackages.openDocument(document), generator);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.parser;
+
+import java.util.*;
+
+/**
+ * Hands fields on in the order a result map ({@code map::put}) ends up holding them: a key that occurs more than
+ * once keeps the position of its first occurrence and the value of its last. With the number of occurrences of each
+ * key known up front, fields pass straight through until a repeated key turns up, and are only held back from there
+ * until its last occurrence. Without them every field is held back until {@link #finish}.
+ */
+final class OrderedFieldSink implements FieldSink {
+
+    private final FieldSink target;
+    // Occurrences still to come per key, or null if unknown
+    private final Map<String, Integer> remaining;
+    private final LinkedHashMap<String, Object> held = new LinkedHashMap<>();
+
+    OrderedFieldSink(FieldSink target, Map<String, Integer> occurrences) {
+        this.target = target;
+        this.remaining = occurrences == null ? null : new HashMap<>(occurrences);
+    }
+
+    @Override
+    public void accept(String key, Object value) {
+        if (remaining == null) {
+            held.put(key, value);
+            return;
+        }
+        int left = remaining.merge(key, -1, Integer::sum);
+        if (held.isEmpty() && left <= 0) {
+            target.accept(key, value);
+            return;
+        }
+        held.put(key, value);
+        Iterator<Map.Entry<String, Object>> fields = held.entrySet().iterator();
+        while (fields.hasNext()) {
+            Map.Entry<String, Object> field = fields.next();
+            if (remaining.getOrDefault(field.getKey(), 0) > 0) break;
+            target.accept(field.getKey(), field.getValue());
+            fields.remove();
+        }
+    }
+
+    // Passes on whatever is still held back, in order
+    void finish() {
+        held.forEach(target::accept);
+        held.clear();
+    }
+}
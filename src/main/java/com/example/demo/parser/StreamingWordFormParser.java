@@ -0,0 +1,380 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+
+/**
+ * StAX based alternative to the XWPFDocument walk in {@link WordFormParser}. Reads word/document.xml
+ * straight out of the package and keeps at most one table in memory at a time.
+ */
+final class StreamingWordFormParser {
+
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private StreamingWordFormParser() {
+    }
+
+    static OPCPackage openPackage(InputStream in) throws IOException {
+        try {
+            return OPCPackage.open(in);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Not a valid DOCX package", e);
+        }
+    }
+
+    static void extractDataFromPackage(OPCPackage pkg, FieldSink sink) throws IOException {
+        PackagePart mainPart = findMainDocumentPart(pkg);
+        try (InputStream in = mainPart.getInputStream()) {
+            extractDataFromDocumentXml(in, sink);
+        }
+    }
+
+    static void extractDataFromDocumentXml(InputStream documentXml, FieldSink sink) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(documentXml);
+            if (advanceTo(reader, "body")) {
+                readBody(reader, WordFormParser.flattening(sink));
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to stream word/document.xml", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    private static PackagePart findMainDocumentPart(OPCPackage pkg) throws IOException {
+        PackageRelationshipCollection rels = pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT);
+        if (rels.size() == 0) {
+            throw new IOException("Package has no main document part");
+        }
+        try {
+            return pkg.getPart(rels.getRelationship(0));
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to resolve main document part", e);
+        }
+    }
+
+    private static void readBody(XMLStreamReader reader, FieldSink sectionSink)
+            throws XMLStreamException {
+        List<String> currentHeadings = null;
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            // Reading is part of each stage here: paragraphs count as layout, tables as table extraction
+            long start = System.nanoTime();
+            if ("p".equals(name)) {
+                Para paragraph = readParagraph(reader);
+                List<String> headings = headingsOf(paragraph);
+                if (!headings.isEmpty()) {
+                    currentHeadings = headings;
+                }
+                WordFormParser.METRICS.stage(ExtractionMetrics.Stage.LAYOUT, start);
+            } else if ("tbl".equals(name)) {
+                Table table = readTable(reader);
+                if (currentHeadings != null && currentHeadings.size() > 1 && table.rows.size() == 1) {
+                    WordFormParser.METRICS.stage(ExtractionMetrics.Stage.TABLES, start);
+                    WordFormParser.processRowForMultipleHeadings(summaries(table.rows.get(0)), currentHeadings,
+                            sectionSink);
+                } else {
+                    String fallbackHeading = (currentHeadings != null && !currentHeadings.isEmpty())
+                            ? currentHeadings.get(0)
+                            : findFirstBoldCellText(table);
+                    if (fallbackHeading == null) fallbackHeading = "Unnamed Section";
+                    LinkedHashMap<String, Object> rowMap = extractTableData(table, fallbackHeading);
+                    WordFormParser.METRICS.stage(ExtractionMetrics.Stage.TABLES, start);
+                    sectionSink.accept(fallbackHeading, rowMap);
+                }
+                currentHeadings = null;
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    // Mirrors WordFormParser.processParagraphForHeadings
+    private static List<String> headingsOf(Para paragraph) {
+        String text = paragraph.text.toString().trim();
+        if (text.isEmpty() || !paragraph.bold) return Collections.emptyList();
+        if (text.equals("All fields marked with an * are mandatory fields (for the Final Report)")) {
+            return Collections.emptyList();
+        }
+        return WordFormParser.splitHeadings(text);
+    }
+
+    // Mirrors WordFormParser.findFirstBoldCellText
+    private static String findFirstBoldCellText(Table table) {
+        for (List<Cell> row : table.rows) {
+            for (Cell cell : row) {
+                if (cell.firstBoldText != null) {
+                    return TextSegments.stripLast(cell.firstBoldText, ':');
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<CellSummary> summaries(List<Cell> row) {
+        List<CellSummary> summaries = new ArrayList<>(row.size());
+        for (Cell cell : row) {
+            summaries.add(cell.summary);
+        }
+        return summaries;
+    }
+
+    private static LinkedHashMap<String, Object> extractTableData(Table table, String currentHeading) {
+        LinkedHashMap<String, Object> rowMap = new LinkedHashMap<>();
+        for (List<Cell> row : table.rows) {
+            for (Cell cell : row) {
+                WordFormParser.processTableCell(cell.summary, rowMap, currentHeading);
+            }
+        }
+        return rowMap;
+    }
+
+    private static Table readTable(XMLStreamReader reader) throws XMLStreamException {
+        Table table = new Table();
+        while (nextChild(reader)) {
+            if ("tr".equals(reader.getLocalName())) {
+                List<Cell> row = new ArrayList<>();
+                while (nextChild(reader)) {
+                    if ("tc".equals(reader.getLocalName())) {
+                        row.add(readCell(reader));
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+                table.rows.add(row);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return table;
+    }
+
+    // Paragraphs are folded into the cell summary as they are read, only the first bold text is kept aside
+    private static Cell readCell(XMLStreamReader reader) throws XMLStreamException {
+        CellSummary.Builder summary = new CellSummary.Builder();
+        String firstBoldText = null;
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if ("p".equals(name)) {
+                Para para = readParagraph(reader);
+                for (String inlineSdtText : para.inlineSdtTexts) {
+                    summary.addInlineSdt(inlineSdtText);
+                }
+                summary.addParagraph(para.text);
+                if (firstBoldText == null && para.bold) {
+                    String boldText = para.text.toString().trim();
+                    if (!boldText.isEmpty()) firstBoldText = boldText;
+                }
+            } else if ("sdt".equals(name)) {
+                summary.addBlockSdt(readBlockSdt(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return new Cell(summary.build(), firstBoldText);
+    }
+
+    private static Para readParagraph(XMLStreamReader reader) throws XMLStreamException {
+        Para para = new Para();
+        readRunContainer(reader, para, false);
+        return para;
+    }
+
+    // Handles w:p and the run wrappers POI flattens into XWPFParagraph#getRuns (hyperlinks, simple fields, smart tags)
+    private static void readRunContainer(XMLStreamReader reader, Para para, boolean insideSdt)
+            throws XMLStreamException {
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if ("r".equals(name)) {
+                readRun(reader, para, insideSdt);
+            } else if ("hyperlink".equals(name) || "fldSimple".equals(name) || "smartTag".equals(name)) {
+                readRunContainer(reader, para, insideSdt);
+            } else if ("sdt".equals(name)) {
+                int start = para.text.length();
+                int runStart = para.runText.length();
+                readInlineSdt(reader, para);
+                if (!insideSdt) {
+                    para.inlineSdtTexts.add(para.text.substring(start).trim());
+                    para.runText.setLength(runStart);
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static void readInlineSdt(XMLStreamReader reader, Para para) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if ("sdtContent".equals(reader.getLocalName())) {
+                readRunContainer(reader, para, true);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static void readRun(XMLStreamReader reader, Para para, boolean insideSdt) throws XMLStreamException {
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            switch (name) {
+                case "rPr":
+                    boolean bold = readRunBold(reader);
+                    if (bold && !insideSdt) para.bold = true;
+                    break;
+                case "t":
+                    String value = reader.getElementText();
+                    para.text.append(value);
+                    para.runText.append(value);
+                    break;
+                case "tab":
+                case "ptab":
+                    para.text.append('\t');
+                    para.runText.append('\t');
+                    skipElement(reader);
+                    break;
+                case "br":
+                case "cr":
+                    para.text.append('\n');
+                    para.runText.append('\n');
+                    skipElement(reader);
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+    }
+
+    private static boolean readRunBold(XMLStreamReader reader) throws XMLStreamException {
+        boolean bold = false;
+        while (nextChild(reader)) {
+            if ("b".equals(reader.getLocalName())) {
+                String val = reader.getAttributeValue(W_NS, "val");
+                bold = val == null || "true".equals(val) || "1".equals(val) || "on".equals(val);
+            }
+            skipElement(reader);
+        }
+        return bold;
+    }
+
+    // Same shape as XWPFSDTContent#getText: child blocks joined by new lines
+    private static String readBlockSdt(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        while (nextChild(reader)) {
+            if ("sdtContent".equals(reader.getLocalName())) {
+                boolean first = true;
+                while (nextChild(reader)) {
+                    String name = reader.getLocalName();
+                    String block;
+                    if ("p".equals(name)) {
+                        block = readParagraph(reader).runText.toString();
+                    } else if ("sdt".equals(name)) {
+                        block = readBlockSdt(reader);
+                    } else if ("tbl".equals(name)) {
+                        block = tableText(readTable(reader));
+                    } else {
+                        skipElement(reader);
+                        continue;
+                    }
+                    if (!first) text.append('\n');
+                    text.append(block);
+                    first = false;
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+        return text.toString();
+    }
+
+    private static String tableText(Table table) {
+        StringBuilder text = new StringBuilder();
+        for (List<Cell> row : table.rows) {
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) text.append('\t');
+                text.append(row.get(i).summary.text);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static boolean advanceTo(XMLStreamReader reader, String localName) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && localName.equals(reader.getLocalName())
+                    && W_NS.equals(reader.getNamespaceURI())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Moves to the next child start element of the current element, or returns false at its end tag
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) return true;
+            if (event == XMLStreamConstants.END_ELEMENT) return false;
+        }
+        return false;
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    private static final class Table {
+        final List<List<Cell>> rows = new ArrayList<>();
+    }
+
+    private static final class Cell {
+        final CellSummary summary;
+        // Trimmed text of the first bold, non-blank paragraph
+        final String firstBoldText;
+
+        Cell(CellSummary summary, String firstBoldText) {
+            this.summary = summary;
+            this.firstBoldText = firstBoldText;
+        }
+    }
+
+    private static final class Para {
+        final StringBuilder text = new StringBuilder();
+        // Text of the paragraph's own runs, without inline content controls
+        final StringBuilder runText = new StringBuilder();
+        final List<String> inlineSdtTexts = new ArrayList<>();
+        boolean bold;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.parser;
+
+import java.util.*;
+
+/**
+ * Layout templates keyed by {@link LayoutFingerprint}. The first document of a layout goes through the heuristics
+ * and registers what they found; later documents with the same fingerprint reuse it. The registry is an LRU bounded
+ * to a fixed number of templates, so one-off layouts cannot grow it without bound and new layouts are still learnt
+ * by a long-running server.
+ */
+final class TemplateRegistry<T> {
+
+    private final Map<Long, T> templates;
+
+    TemplateRegistry(int maxTemplates) {
+        this.templates = new LinkedHashMap<Long, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                return size() > maxTemplates;
+            }
+        };
+    }
+
+    // One lookup per document, so a lock around the access-ordered map costs nothing measurable
+    T get(long fingerprint) {
+        synchronized (templates) {
+            return templates.get(fingerprint);
+        }
+    }
+
+    void register(long fingerprint, T template) {
+        synchronized (templates) {
+            templates.putIfAbsent(fingerprint, template);
+        }
+    }
+
+    int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+}
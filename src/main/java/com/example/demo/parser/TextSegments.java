@@ -0,0 +1,143 @@
+package com.example.demo.parser;
+
+/**
+ * Single-pass replacements for the regex splitting and key cleanup of cell and paragraph text. A TextSegments walks
+ * the parts between tabs and line breaks, as {@code split("\\t|\\r?\\n")} cuts them, and reports each non-blank part
+ * as trimmed offsets, so only the parts that are kept become Strings. The static helpers give exactly the results of
+ * the regexes they replace, including '$' also matching before a final line terminator.
+ */
+final class TextSegments {
+
+    private final String text;
+    private int position;
+    private int start;
+    private int end;
+
+    TextSegments(String text) {
+        this.text = text;
+    }
+
+    // Moves to the next segment that is not blank once trimmed; false when the text is used up
+    boolean next() {
+        int length = text.length();
+        while (position <= length) {
+            int from = position;
+            int to = from;
+            while (to < length && text.charAt(to) != '\t' && text.charAt(to) != '\n') {
+                to++;
+            }
+            position = to + 1;
+            // A '\r' before the '\n' is whitespace, so trimming drops it as the \r?\n separator would
+            from = trimStart(text, from, to);
+            to = trimEnd(text, from, to);
+            if (from < to) {
+                start = from;
+                end = to;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    String segment() {
+        return text.substring(start, end);
+    }
+
+    // First index in [start, end) that String#trim would keep
+    static int trimStart(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    static int trimEnd(String text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // text.substring(start, end).trim(), without the intermediate String
+    static String trimmed(String text, int start, int end) {
+        start = trimStart(text, start, end);
+        end = trimEnd(text, start, end);
+        return start == 0 && end == text.length() ? text : text.substring(start, end);
+    }
+
+    static String stripLast(String text, char mark) {
+        return stripLast(text, 0, text.length(), mark);
+    }
+
+    // text.substring(start, end).replaceAll("<mark>$", "").trim()
+    static String stripLast(String text, int start, int end, char mark) {
+        if (end > start && text.charAt(end - 1) == mark) {
+            return trimmed(text, start, end - 1);
+        }
+        int terminator = finalTerminator(text, start, end);
+        if (terminator < end && terminator > start && text.charAt(terminator - 1) == mark) {
+            return (text.substring(start, terminator - 1) + text.substring(terminator, end)).trim();
+        }
+        return trimmed(text, start, end);
+    }
+
+    // text.replaceAll("\\s*[<marks>]+\\s*$", "").trim()
+    static String stripTrailingMarks(String text, String marks) {
+        int length = text.length();
+        int matchEnd = length;
+        int matchStart = markRunStart(text, length, marks);
+        int terminator = finalTerminator(text, 0, length);
+        if (terminator < length) {
+            int beforeTerminator = markRunStart(text, terminator, marks);
+            if (beforeTerminator >= 0 && (matchStart < 0 || beforeTerminator < matchStart)) {
+                matchStart = beforeTerminator;
+                matchEnd = terminator;
+            }
+        }
+        if (matchStart < 0) return text.trim();
+        if (matchEnd == length) return trimmed(text, 0, matchStart);
+        return (text.substring(0, matchStart) + text.substring(matchEnd)).trim();
+    }
+
+    // Start of the leftmost \s*[marks]+\s* ending at matchEnd, or -1 if there is none
+    private static int markRunStart(String text, int matchEnd, String marks) {
+        int i = matchEnd;
+        while (i > 0 && isRegexSpace(text.charAt(i - 1))) {
+            i--;
+        }
+        int marksEnd = i;
+        while (i > 0 && marks.indexOf(text.charAt(i - 1)) >= 0) {
+            i--;
+        }
+        if (i == marksEnd) return -1;
+        while (i > 0 && isRegexSpace(text.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    // Where a line terminator ending the range starts, as java.util.regex '$' sees it; end if there is none
+    private static int finalTerminator(String text, int start, int end) {
+        if (end - start >= 2 && text.charAt(end - 2) == '\r' && text.charAt(end - 1) == '\n') return end - 2;
+        if (end > start) {
+            char last = text.charAt(end - 1);
+            if (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+                return end - 1;
+            }
+        }
+        return end;
+    }
+
+    // The \s class: [ \t\n\x0B\f\r]
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.parser;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * MDIR form extractor on top of {@link WordFormParser}. Both engines produce the same fields, so they share the
+ * form id and version.
+ */
+public final class WordFormExtractor implements DocumentExtractor {
+
+    static final int VERSION = 1;
+
+    private final WordFormParser.Engine engine;
+
+    public WordFormExtractor(WordFormParser.Engine engine) {
+        this.engine = Objects.requireNonNull(engine, "engine");
+    }
+
+    public WordFormParser.Engine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public String getId() {
+        return "mdir";
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(InputStream in) throws IOException {
+        return WordFormParser.extractDataFromDocument(in, engine);
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(Path document) throws IOException {
+        return WordFormParser.extractDataFromDocument(document, engine);
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(InputStream in, Set<String> wantedKeys) throws IOException {
+        return WordFormParser.extractDataFromDocument(in, engine, wantedKeys);
+    }
+
+    @Override
+    public LinkedHashMap<String, Object> extract(Path document, Set<String> wantedKeys) throws IOException {
+        return WordFormParser.extractDataFromDocument(document, engine, wantedKeys);
+    }
+
+    @Override
+    public void writeJson(InputStream in, JsonGenerator generator) throws IOException {
+        WordFormParser.writeJson(in, engine, generator);
+    }
+
+    @Override
+    public void writeJson(Path document, JsonGenerator generator) throws IOException {
+        WordFormParser.writeJson(document, engine, generator);
+    }
+}
@@ -1,38 +1,251 @@
 package com.example.demo.parser;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.xwpf.usermodel.*;
 import org.apache.poi.xwpf.usermodel.IBodyElement;
-import org.apache.poi.xwpf.usermodel.IRunElement;
-import org.apache.poi.xwpf.usermodel.XWPFSDT;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 public class WordFormParser {
 
+    public enum Engine {
+        DOM,
+        STREAMING,
+        // DOM, with the tables of one document extracted concurrently on the common ForkJoinPool
+        PARALLEL
+    }
+
+    static final ExtractionMetrics METRICS = ExtractionMetrics.forForm("mdir");
+
     public static void main(String[] args) {
-        try (
-                InputStream fis = WordFormParser.class.getClassLoader().getResourceAsStream("MDIR_Form.docx");
-                XWPFDocument document = new XWPFDocument(fis)
-        ) {
-            LinkedHashMap<String, Object> extractedData = extractDataFromDocument(document);
+        Engine engine = Engine.DOM;
+        if (args.length > 0 && "--streaming".equals(args[0])) engine = Engine.STREAMING;
+        if (args.length > 0 && "--parallel".equals(args[0])) engine = Engine.PARALLEL;
+        try (InputStream fis = WordFormParser.class.getClassLoader().getResourceAsStream("MDIR_Form.docx")) {
+            LinkedHashMap<String, Object> extractedData = extractDataFromDocument(fis, engine);
             printJson(extractedData);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private static LinkedHashMap<String, Object> extractDataFromDocument(XWPFDocument document) {
+    public static LinkedHashMap<String, Object> extractDataFromDocument(InputStream in, Engine engine)
+            throws IOException {
+        return extractDataFromDocument(in, engine, null);
+    }
+
+    // Projection: only the given output keys (cleaned section headings) are extracted, see extractDataFromDocument
+    // (XWPFDocument, Set, FieldSink). wantedKeys may be null for all of them.
+    public static LinkedHashMap<String, Object> extractDataFromDocument(InputStream in, Engine engine,
+                                                                        Set<String> wantedKeys) throws IOException {
+        LinkedHashMap<String, Object> finalMap = new LinkedHashMap<>();
+        extract(in, engine, wantedKeys, finalMap::put);
+        return finalMap;
+    }
+
+    // Writes the same fields as extractDataFromDocument straight to the generator, without building the result map.
+    // A heading that occurs twice is written once, at its first position with its last value, as the map holds it.
+    // The DOM engines know every heading before the first table is read and only hold back fields from a repeated
+    // heading on; the StAX engine finds headings as it goes, so its fields are all written once the walk is done.
+    public static void writeJson(InputStream in, Engine engine, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        try {
+            FieldSink json = METRICS.serializing(generator);
+            if (engine == Engine.STREAMING) {
+                OrderedFieldSink ordered = new OrderedFieldSink(json, null);
+                extract(in, engine, null, ordered);
+                ordered.finish();
+            } else {
+                extract(in, engine, null, json);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndObject();
+    }
+
+    // File-backed variant: zip entries are read on demand instead of the whole package being held in memory
+    public static LinkedHashMap<String, Object> extractDataFromDocument(Path file, Engine engine) throws IOException {
+        return extractDataFromDocument(file, engine, null);
+    }
+
+    public static LinkedHashMap<String, Object> extractDataFromDocument(Path file, Engine engine,
+                                                                        Set<String> wantedKeys) throws IOException {
+        LinkedHashMap<String, Object> finalMap = new LinkedHashMap<>();
+        extract(file, engine, wantedKeys, finalMap::put);
+        return finalMap;
+    }
+
+    public static void writeJson(Path file, Engine engine, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        try {
+            FieldSink json = METRICS.serializing(generator);
+            if (engine == Engine.STREAMING) {
+                OrderedFieldSink ordered = new OrderedFieldSink(json, null);
+                extract(file, engine, null, ordered);
+                ordered.finish();
+            } else {
+                extract(file, engine, null, json);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void extract(Path file, Engine engine, Set<String> wantedKeys, FieldSink sink) throws IOException {
+        METRICS.begin();
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            OPCPackage pkg = DocxPackages.openReadOnly(file);
+            try {
+                if (engine == Engine.STREAMING) {
+                    METRICS.stage(ExtractionMetrics.Stage.OPEN, start);
+                    StreamingWordFormParser.extractDataFromPackage(pkg, projecting(wantedKeys, sink));
+                } else {
+                    XWPFDocument document = new XWPFDocument(pkg);
+                    METRICS.stage(ExtractionMetrics.Stage.OPEN, start);
+                    extractDataFromDocument(document, wantedKeys, sink, engine == Engine.PARALLEL);
+                }
+            } finally {
+                pkg.revert();
+            }
+            success = true;
+        } finally {
+            METRICS.end(success);
+        }
+    }
+
+    private static void extract(InputStream in, Engine engine, Set<String> wantedKeys, FieldSink sink)
+            throws IOException {
+        METRICS.begin();
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            if (engine == Engine.STREAMING) {
+                OPCPackage pkg = StreamingWordFormParser.openPackage(in);
+                METRICS.stage(ExtractionMetrics.Stage.OPEN, start);
+                try {
+                    StreamingWordFormParser.extractDataFromPackage(pkg, projecting(wantedKeys, sink));
+                } finally {
+                    pkg.revert();
+                }
+            } else {
+                try (XWPFDocument document = new XWPFDocument(in)) {
+                    METRICS.stage(ExtractionMetrics.Stage.OPEN, start);
+                    extractDataFromDocument(document, wantedKeys, sink, engine == Engine.PARALLEL);
+                }
+            }
+            success = true;
+        } finally {
+            METRICS.end(success);
+        }
+    }
+
+    static LinkedHashMap<String, Object> extractDataFromDocument(XWPFDocument document) {
+        LinkedHashMap<String, Object> finalMap = new LinkedHashMap<>();
+        extractDataFromDocument(document, finalMap::put);
+        return finalMap;
+    }
+
+    static void extractDataFromDocument(XWPFDocument document, FieldSink sink) {
+        extractDataFromDocument(document, null, sink, false);
+    }
+
+    // Sections are flattened and handed to the sink as soon as each table is done. The heading(s) each table belongs
+    // to are discovered per document: they are the bold paragraphs' text, which is what the output keys are made of,
+    // so no cheaper layout summary could stand in for them.
+    // With wantedKeys, tables whose headings are not wanted are never read, and the walk ends after the last table
+    // that produces a wanted key; a heading repeated later still overrides an earlier one, as in a full extraction.
+    // With parallelTables, the tables are first paired with their bindings, then extracted concurrently and their
+    // sections replayed into the sink in document order, so the output is the same as the sequential walk.
+    // A sink that is not a map still gets a repeated heading once, in the map's order, see OrderedFieldSink.
+    static void extractDataFromDocument(XWPFDocument document, Set<String> wantedKeys, FieldSink sink,
+                                        boolean parallelTables) {
+        long start = System.nanoTime();
         List<IBodyElement> elements = document.getBodyElements();
-        LinkedHashMap<String, Object> extractedData = new LinkedHashMap<>();
-        List<String> currentHeadings = null;
+        List<TableBinding> bindings = discoverTableBindings(elements);
+        METRICS.stage(ExtractionMetrics.Stage.LAYOUT, start);
 
-        for (int i = 0; i < elements.size(); i++) {
-            IBodyElement element = elements.get(i);
+        int lastTable = bindings.size() - 1;
+        if (wantedKeys != null) {
+            while (lastTable >= 0 && !bindings.get(lastTable).produces(wantedKeys)) lastTable--;
+        }
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (TableBinding binding : bindings) {
+            binding.count(occurrences);
+        }
+        OrderedFieldSink ordered = null;
+        if (occurrences.size() < totalOf(occurrences)) {
+            ordered = new OrderedFieldSink(sink, occurrences);
+            sink = ordered;
+        }
+        FieldSink sectionSink = flattening(projecting(wantedKeys, sink));
+        List<ForkJoinTask<List<Map.Entry<String, Object>>>> tasks = new ArrayList<>();
+        int tableIndex = 0;
+        for (IBodyElement element : elements) {
+            if (tableIndex > lastTable) break;
+            if (!(element instanceof XWPFTable)) continue;
+            XWPFTable table = (XWPFTable) element;
+            TableBinding binding = bindings.get(tableIndex++);
+            if (wantedKeys != null && !binding.produces(wantedKeys)) continue;
+            if (parallelTables) {
+                tasks.add(ForkJoinTask.adapt(METRICS.forked(() -> bufferTable(table, binding))));
+            } else {
+                extractTable(table, binding, sectionSink);
+            }
+        }
+        if (!tasks.isEmpty()) {
+            ForkJoinTask.invokeAll(tasks);
+            for (ForkJoinTask<List<Map.Entry<String, Object>>> task : tasks) {
+                for (Map.Entry<String, Object> section : task.join()) {
+                    sectionSink.accept(section.getKey(), section.getValue());
+                }
+            }
+        }
+        if (ordered != null) ordered.finish();
+    }
 
+    private static int totalOf(Map<String, Integer> occurrences) {
+        int total = 0;
+        for (int count : occurrences.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static void extractTable(XWPFTable table, TableBinding binding, FieldSink sectionSink) {
+        if (binding.headings != null) {
+            // Special case: tab-separated headings + single-row table
+            processTableRowForMultipleHeadings(table.getRow(0), binding.headings, sectionSink);
+        } else {
+            // Standard table extraction
+            long tableStart = System.nanoTime();
+            LinkedHashMap<String, Object> rowMap = extractTableData(table, binding.heading);
+            METRICS.stage(ExtractionMetrics.Stage.TABLES, tableStart);
+            sectionSink.accept(binding.heading, rowMap);
+        }
+    }
+
+    // A table's sections, collected off the document's thread. Every table is read by one task only, so POI's lazily
+    // built row and cell lists are never shared; XMLBeans locks the document for each read underneath.
+    private static List<Map.Entry<String, Object>> bufferTable(XWPFTable table, TableBinding binding) {
+        List<Map.Entry<String, Object>> sections = new ArrayList<>();
+        extractTable(table, binding, (key, value) -> sections.add(new AbstractMap.SimpleImmutableEntry<>(key, value)));
+        return sections;
+    }
+
+    private static List<TableBinding> discoverTableBindings(List<IBodyElement> elements) {
+        List<TableBinding> bindings = new ArrayList<>();
+        List<String> currentHeadings = null;
+
+        for (IBodyElement element : elements) {
             if (element instanceof XWPFParagraph) {
                 XWPFParagraph paragraph = (XWPFParagraph) element;
                 List<String> headings = processParagraphForHeadings(paragraph);
@@ -42,21 +255,18 @@ public class WordFormParser {
             } else if (element instanceof XWPFTable) {
                 XWPFTable table = (XWPFTable) element;
                 if (currentHeadings != null && currentHeadings.size() > 1 && table.getNumberOfRows() == 1) {
-                    // Special case: tab-separated headings + single-row table
-                    processTableRowForMultipleHeadings(table.getRow(0), currentHeadings, extractedData);
+                    bindings.add(new TableBinding(null, currentHeadings));
                 } else {
-                    // Standard table extraction
                     String fallbackHeading = (currentHeadings != null && !currentHeadings.isEmpty())
                             ? currentHeadings.get(0)
                             : findFirstBoldCellText(table);
                     if (fallbackHeading == null) fallbackHeading = "Unnamed Section";
-                    LinkedHashMap<String, Object> rowMap = extractTableData(table, fallbackHeading);
-                    extractedData.put(fallbackHeading, rowMap);
+                    bindings.add(new TableBinding(fallbackHeading, null));
                 }
                 currentHeadings = null;
             }
         }
-        return flattenResult(extractedData);
+        return Collections.unmodifiableList(bindings);
     }
 
     private static List<String> processParagraphForHeadings(XWPFParagraph paragraph) {
@@ -67,23 +277,26 @@ public class WordFormParser {
         }
         for (XWPFRun run : paragraph.getRuns()) {
             if (run.isBold()) {
-                List<String> headings = new ArrayList<>();
-                String[] splits = text.split("\\t|\\r?\\n");
-                for (String s : splits) {
-                    String trimmed = s.trim();
-                    if (!trimmed.isEmpty()) {
-                        if (trimmed.endsWith(":")) {
-                            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
-                        }
-                        headings.add(trimmed);
-                    }
-                }
-                return headings;
+                return splitHeadings(text);
             }
         }
         return Collections.emptyList();
     }
 
+    // One heading per tab- or line-separated part of a bold paragraph, without a trailing ':'
+    static List<String> splitHeadings(String text) {
+        List<String> headings = new ArrayList<>();
+        TextSegments segments = new TextSegments(text);
+        while (segments.next()) {
+            int end = segments.end();
+            if (text.charAt(end - 1) == ':') {
+                end = TextSegments.trimEnd(text, segments.start(), end - 1);
+            }
+            headings.add(text.substring(segments.start(), end));
+        }
+        return headings;
+    }
+
     private static String findFirstBoldCellText(XWPFTable table) {
         for (XWPFTableRow row : table.getRows()) {
             for (XWPFTableCell cell : row.getTableCells()) {
@@ -92,7 +305,7 @@ public class WordFormParser {
                         if (run.isBold()) {
                             String boldText = para.getText().trim();
                             if (!boldText.isEmpty()) {
-                                return boldText.replaceAll(":$", "").trim();
+                                return TextSegments.stripLast(boldText, ':');
                             }
                         }
                     }
@@ -102,38 +315,32 @@ public class WordFormParser {
         return null;
     }
 
-    private static List<String> extractAllSDTValues(XWPFTableCell cell) {
-        List<String> values = new ArrayList<>();
-        for (IBodyElement elem : cell.getBodyElements()) {
-            if (elem instanceof XWPFSDT) {
-                String val = ((XWPFSDT) elem).getContent().getText().trim();
-                if (isValidValue(val)) values.add(val);
-            }
-        }
-        for (XWPFParagraph para : cell.getParagraphs()) {
-            for (IRunElement runElem : para.getIRuns()) {
-                if (runElem instanceof XWPFSDT) {
-                    String val = ((XWPFSDT) runElem).getContent().getText().trim();
-                    if (isValidValue(val)) values.add(val);
-                }
-            }
-            String paraText = para.getText().trim();
-            if (isValidValue(paraText)) values.add(paraText);
+    private static void processTableRowForMultipleHeadings(XWPFTableRow row, List<String> headings,
+                                                           FieldSink outputSink) {
+        long start = System.nanoTime();
+        List<CellSummary> cells = new ArrayList<>();
+        for (XWPFTableCell cell : row.getTableCells()) {
+            cells.add(CellSummary.of(cell));
         }
-        Set<String> unique = new LinkedHashSet<>(values);
-        return new ArrayList<>(unique);
+        METRICS.stage(ExtractionMetrics.Stage.TABLES, start);
+        processRowForMultipleHeadings(cells, headings, outputSink);
     }
 
-    private static void processTableRowForMultipleHeadings(XWPFTableRow row, List<String> headings,
-                                                           LinkedHashMap<String, Object> outputMap) {
+    // Spreads the row's content-control values over the tab-separated headings, in order
+    static void processRowForMultipleHeadings(List<CellSummary> row, List<String> headings, FieldSink outputSink) {
         List<String> sdtValues = new ArrayList<>();
-        for (XWPFTableCell cell : row.getTableCells()) {
-            sdtValues.addAll(extractAllSDTValues(cell));
+        for (CellSummary cell : row) {
+            sdtValues.addAll(cell.values());
         }
         for (int i = 0; i < headings.size(); i++) {
             String heading = headings.get(i);
             String value = (i < sdtValues.size()) ? sdtValues.get(i) : null;
-            outputMap.put(heading, isValidValue(value) ? value : null);
+            if (value != null && !isValidValue(value)) {
+                METRICS.valueRejected();
+                value = null;
+            }
+            METRICS.fieldExtracted();
+            outputSink.accept(heading, value);
         }
     }
 
@@ -141,76 +348,61 @@ public class WordFormParser {
         LinkedHashMap<String, Object> rowMap = new LinkedHashMap<>();
         for (XWPFTableRow row : table.getRows()) {
             for (XWPFTableCell cell : row.getTableCells()) {
-                processTableCell(cell, rowMap, currentHeading);
+                processTableCell(CellSummary.of(cell), rowMap, currentHeading);
             }
         }
         return rowMap;
     }
 
-    private static void processTableCell(XWPFTableCell cell, LinkedHashMap<String, Object> rowMap,
-                                         String currentHeading) {
-        String rawText = cell.getText();
-        if (rawText == null || rawText.trim().isEmpty()) return;
-        String[] tabSplits = rawText.split("\t");
-        for (String tabPart : tabSplits) {
-            String[] lineSplits = tabPart.split("\\r?\\n");
-            for (String line : lineSplits) {
-                String text = line.trim();
-                if (text.isEmpty()) continue;
-                if (currentHeading != null && text.startsWith(currentHeading)) {
-                    text = text.substring(currentHeading.length()).replaceFirst("^[:\\-]", "").trim();
-                    if (text.isEmpty()) continue;
-                }
-                if (currentHeading != null && currentHeading.equalsIgnoreCase(text)) continue;
-                boolean isMandatory = checkIfMandatory(cell, text);
-                String key;
-                String value = null;
-                int colonIndex = text.indexOf(':');
-                if (colonIndex != -1) {
-                    key = text.substring(0, colonIndex).replaceAll("\\*$", "").trim();
-                    value = text.substring(colonIndex + 1).trim();
-                    if (value.isEmpty()) value = null;
-                } else {
-                    key = text.replaceAll("\\*$", "").trim();
-                }
-                String sdtValue = extractValueFromSDT(cell);
-                if (isValidValue(sdtValue)) value = sdtValue;
-                if (!isValidValue(value)) value = null;
-                if (isMandatory) {
-                    LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
-                    valObj.put("value", value);
-                    valObj.put("mandatory", true);
-                    rowMap.put(key, valObj);
-                } else {
-                    rowMap.put(key, value);
-                }
+    // Every line of the cell becomes a key; the value comes from the first content control or the text after ':'
+    static void processTableCell(CellSummary cell, LinkedHashMap<String, Object> rowMap, String currentHeading) {
+        String rawText = cell.text;
+        String sdtValue = cell.sdtValue;
+        TextSegments lines = new TextSegments(rawText);
+        while (lines.next()) {
+            int start = lines.start();
+            int end = lines.end();
+            if (currentHeading != null && end - start >= currentHeading.length()
+                    && rawText.startsWith(currentHeading, start)) {
+                // Drop the heading and one ':' or '-' after it
+                start += currentHeading.length();
+                if (start < end && (rawText.charAt(start) == ':' || rawText.charAt(start) == '-')) start++;
+                start = TextSegments.trimStart(rawText, start, end);
+                if (start == end) continue;
             }
-        }
-    }
-
-    private static boolean checkIfMandatory(XWPFTableCell cell, String textToMatch) {
-        for (XWPFParagraph para : cell.getParagraphs()) {
-            String paraText = para.getText().trim();
-            if (paraText.equals(textToMatch) && paraText.endsWith("*")) {
-                return true;
+            if (currentHeading != null && end - start == currentHeading.length()
+                    && rawText.regionMatches(true, start, currentHeading, 0, end - start)) continue;
+            String text = rawText.substring(start, end);
+            boolean isMandatory = cell.isMandatory(text);
+            String key;
+            String value = null;
+            int colonIndex = text.indexOf(':');
+            if (colonIndex != -1) {
+                key = TextSegments.stripLast(text, 0, colonIndex, '*');
+                value = TextSegments.trimmed(text, colonIndex + 1, text.length());
+                if (value.isEmpty()) value = null;
+            } else {
+                key = TextSegments.stripLast(text, '*');
             }
-        }
-        return false;
-    }
-
-    private static String extractValueFromSDT(XWPFTableCell cell) {
-        for (IBodyElement elem : cell.getBodyElements()) {
-            if (elem instanceof XWPFSDT) {
-                String sdtValue = ((XWPFSDT) elem).getContent().getText().trim();
-                if (isValidValue(sdtValue)) {
-                    return sdtValue;
-                }
+            if (sdtValue != null) value = sdtValue;
+            if (value != null && !isValidValue(value)) {
+                METRICS.valueRejected();
+                value = null;
+            }
+            METRICS.fieldExtracted();
+            if (isMandatory) {
+                if (value == null) METRICS.mandatoryMissing();
+                LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
+                valObj.put("value", value);
+                valObj.put("mandatory", true);
+                rowMap.put(key, valObj);
+            } else {
+                rowMap.put(key, value);
             }
         }
-        return null;
     }
 
-    private static boolean isValidValue(String value) {
+    static boolean isValidValue(String value) {
         if (value == null) return false;
         String val = value.trim();
         return !(val.isEmpty() || val.equalsIgnoreCase("Choose an item.")
@@ -221,54 +413,90 @@ public class WordFormParser {
                 || val.equals("*"));
     }
 
-    private static LinkedHashMap<String, Object> flattenResult(LinkedHashMap<String, Object> sectionMap) {
-        LinkedHashMap<String, Object> finalMap = new LinkedHashMap<>();
-        for (Map.Entry<String, Object> entry : sectionMap.entrySet()) {
-            String originalHeading = entry.getKey().trim();
-            Object value = entry.getValue();
-            boolean headingIsMandatory = originalHeading.endsWith("*") || originalHeading.endsWith(": *");
-            // Remove trailing :, #, * and spaces
-            String cleanedHeading = originalHeading.replaceAll("\\s*[:#\\*]+\\s*$", "").trim();
-            if (value instanceof LinkedHashMap) {
-                LinkedHashMap<?, ?> section = (LinkedHashMap<?, ?>) value;
-                if (section.isEmpty()) {
-                    if (headingIsMandatory) {
-                        LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
-                        valObj.put("value", null);
-                        valObj.put("mandatory", true);
-                        finalMap.put(cleanedHeading, valObj);
-                    } else {
-                        finalMap.put(cleanedHeading, null);
-                    }
-                } else {
-                    LinkedHashMap<String, Object> cleanSection = new LinkedHashMap<>();
-                    for (Map.Entry<?, ?> innerEntry : section.entrySet()) {
-                        String k = innerEntry.getKey().toString().trim();
-                        Object v = innerEntry.getValue();
-                        // Remove trailing :, # and spaces from keys
-                        k = k.replaceAll("\\s*[:#]+\\s*$", "").trim();
-                        cleanSection.put(k, v);
-                    }
-                    finalMap.put(cleanedHeading, cleanSection);
-                }
+    // Drops fields whose cleaned key is not wanted; a null set keeps everything
+    private static FieldSink projecting(Set<String> wantedKeys, FieldSink sink) {
+        if (wantedKeys == null) return sink;
+        return (key, value) -> {
+            if (wantedKeys.contains(key)) sink.accept(key, value);
+        };
+    }
+
+    // Output key of a section heading: trailing ':', '#', '*' and spaces removed
+    static String cleanHeading(String heading) {
+        return TextSegments.stripTrailingMarks(heading.trim(), ":#*");
+    }
+
+    // Cleans section headings/keys and wraps mandatory headings before passing each section on
+    static FieldSink flattening(FieldSink finalSink) {
+        return (heading, value) -> flattenEntry(heading, value, finalSink);
+    }
+
+    private static void flattenEntry(String heading, Object value, FieldSink sink) {
+        long start = System.nanoTime();
+        String originalHeading = heading.trim();
+        boolean headingIsMandatory = originalHeading.endsWith("*") || originalHeading.endsWith(": *");
+        String cleanedHeading = cleanHeading(originalHeading);
+        Object cleanedValue = value;
+        if (value instanceof LinkedHashMap) {
+            LinkedHashMap<?, ?> section = (LinkedHashMap<?, ?>) value;
+            if (section.isEmpty()) {
+                cleanedValue = null;
             } else {
-                if (headingIsMandatory) {
-                    LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
-                    valObj.put("value", value);
-                    valObj.put("mandatory", true);
-                    finalMap.put(cleanedHeading, valObj);
-                } else {
-                    finalMap.put(cleanedHeading, value);
+                LinkedHashMap<String, Object> cleanSection = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> innerEntry : section.entrySet()) {
+                    Object v = innerEntry.getValue();
+                    // Remove trailing :, # and spaces from keys
+                    String k = TextSegments.stripTrailingMarks(innerEntry.getKey().toString().trim(), ":#");
+                    cleanSection.put(k, v);
                 }
+                // A non-empty section is never wrapped, even under a mandatory heading
+                METRICS.stage(ExtractionMetrics.Stage.FLATTEN, start);
+                sink.accept(cleanedHeading, cleanSection);
+                return;
             }
         }
-        return finalMap;
+        if (headingIsMandatory) {
+            if (cleanedValue == null) METRICS.mandatoryMissing();
+            LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
+            valObj.put("value", cleanedValue);
+            valObj.put("mandatory", true);
+            cleanedValue = valObj;
+        }
+        METRICS.stage(ExtractionMetrics.Stage.FLATTEN, start);
+        sink.accept(cleanedHeading, cleanedValue);
     }
 
     private static void printJson(Object obj) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        String json = mapper.writeValueAsString(obj);
-        System.out.println(json);
+        JsonOutput.print(obj);
+    }
+
+    // Either a single section heading, or the tab-separated headings spread over a single-row table
+    private static final class TableBinding {
+        final String heading;
+        final List<String> headings;
+
+        TableBinding(String heading, List<String> headings) {
+            this.heading = heading;
+            this.headings = headings == null ? null : Collections.unmodifiableList(new ArrayList<>(headings));
+        }
+
+        // Adds one occurrence per output key this table's sections are written under
+        void count(Map<String, Integer> occurrences) {
+            if (headings == null) {
+                occurrences.merge(cleanHeading(heading), 1, Integer::sum);
+            } else {
+                for (String h : headings) {
+                    occurrences.merge(cleanHeading(h), 1, Integer::sum);
+                }
+            }
+        }
+
+        boolean produces(Set<String> wantedKeys) {
+            if (headings == null) return wantedKeys.contains(cleanHeading(heading));
+            for (String h : headings) {
+                if (wantedKeys.contains(cleanHeading(h))) return true;
+            }
+            return false;
+        }
     }
 }
\ No newline at end of file
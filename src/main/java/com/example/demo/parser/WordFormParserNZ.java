@@ -1,11 +1,25 @@
+package com.example.demo.parser;
+
 import java.io.*;
 import java.util.*;
 import org.apache.poi.xwpf.usermodel.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 public class WordFormParserNZ {
 
+    // Formatting of a row's label cell: white bold starts a main section, black/default bold a sub-section or field
+    private enum RowStyle {
+        MAIN,
+        BOLD,
+        PLAIN
+    }
+
+    private static final ExtractionMetrics METRICS = ExtractionMetrics.forForm("nz");
+
+    interface DocumentOpener {
+        XWPFDocument open() throws IOException;
+    }
+
     public static void main(String[] args) {
         try (
                 InputStream fis = WordFormParserNZ.class.getClassLoader().getResourceAsStream("NZ_Adverse.docx");
@@ -18,8 +32,58 @@ public class WordFormParserNZ {
         }
     }
 
-    private static LinkedHashMap<String, Object> extractDataFromDocument(XWPFDocument document) {
+    static LinkedHashMap<String, Object> extractDataFromDocument(XWPFDocument document) {
         LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        extractDataFromDocument(document, result::put);
+        return result;
+    }
+
+    // Writes each main section to the generator as soon as it is complete
+    public static void writeJson(XWPFDocument document, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        try {
+            extractDataFromDocument(document, METRICS.serializing(generator));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndObject();
+    }
+
+    // Opens, extracts and closes one document, measured as a single extraction
+    static LinkedHashMap<String, Object> extract(DocumentOpener opener) throws IOException {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        extract(opener, result::put);
+        return result;
+    }
+
+    static void writeJson(DocumentOpener opener, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        try {
+            extract(opener, METRICS.serializing(generator));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void extract(DocumentOpener opener, FieldSink result) throws IOException {
+        METRICS.begin();
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            try (XWPFDocument document = opener.open()) {
+                METRICS.stage(ExtractionMetrics.Stage.OPEN, start);
+                extractDataFromDocument(document, result);
+            }
+            success = true;
+        } finally {
+            METRICS.end(success);
+        }
+    }
+
+    // Sections are emitted from inside the row loop, so the tables stage includes handing them to the sink
+    static void extractDataFromDocument(XWPFDocument document, FieldSink result) {
+        long start = System.nanoTime();
         String currentMain = null;
         LinkedHashMap<String, Object> mainMap = null;
         String currentSub = null;
@@ -27,25 +91,28 @@ public class WordFormParserNZ {
         boolean inMain = false, inSub = false, expectSubSection = false;
 
         List<XWPFTable> tables = document.getTables();
-        if (tables == null || tables.isEmpty()) return result;
+        if (tables == null || tables.isEmpty()) return;
         XWPFTable table = tables.get(0);
 
-        for (XWPFTableRow row : table.getRows()) {
-            List<XWPFTableCell> cells = row.getTableCells();
+        // Row styles come from the label runs' bold and colour, which a layout fingerprint would have to read as
+        // well, so they are read per document rather than looked up in a template registry
+        List<XWPFTableRow> rows = table.getRows();
+        String[] labels = new String[rows.size()];
+        for (int r = 0; r < rows.size(); r++) {
+            List<XWPFTableCell> cells = rows.get(r).getTableCells();
             if (cells.isEmpty()) continue;
-            XWPFTableCell cell = cells.get(0);
-            String cellText = cell.getText().trim();
-            if (cellText.isEmpty()) continue;
+            labels[r] = cells.get(0).getText().trim();
+        }
+        RowStyle[] styles = discoverRowStyles(rows, labels);
+        METRICS.stage(ExtractionMetrics.Stage.LAYOUT, start);
+        start = System.nanoTime();
 
-            boolean isMain = false, isBold = false;
-            String color = null;
-            for (XWPFParagraph para : cell.getParagraphs()) {
-                for (XWPFRun run : para.getRuns()) {
-                    if (run.isBold()) isBold = true;
-                    if (run.getColor() != null) color = run.getColor();
-                }
-            }
-            if (isBold && "FFFFFF".equalsIgnoreCase(color)) isMain = true;
+        for (int r = 0; r < rows.size(); r++) {
+            String cellText = labels[r];
+            if (cellText == null || cellText.isEmpty()) continue;
+
+            boolean isMain = styles[r] == RowStyle.MAIN;
+            boolean isBlackBold = styles[r] == RowStyle.BOLD;
 
             // Main section
             if (isMain) {
@@ -53,9 +120,9 @@ public class WordFormParserNZ {
                     mainMap.put(currentSub, subMap);
                 }
                 if (currentMain != null && mainMap != null) {
-                    result.put(currentMain, mainMap);
+                    result.accept(currentMain, mainMap);
                 }
-                currentMain = cellText.replaceAll(":$", "").trim();
+                currentMain = TextSegments.stripLast(cellText, ':');
                 mainMap = new LinkedHashMap<>();
                 currentSub = null;
                 subMap = null;
@@ -66,11 +133,11 @@ public class WordFormParserNZ {
             }
 
             // Sub-section (first bold after main)
-            if (isBold && (color == null || "000000".equalsIgnoreCase(color)) && inMain && expectSubSection) {
+            if (isBlackBold && inMain && expectSubSection) {
                 if (currentSub != null && subMap != null) {
                     mainMap.put(currentSub, subMap);
                 }
-                currentSub = cellText.replaceAll(":$", "").trim();
+                currentSub = TextSegments.stripLast(cellText, ':');
                 subMap = new LinkedHashMap<>();
                 inSub = true;
                 expectSubSection = false;
@@ -78,18 +145,19 @@ public class WordFormParserNZ {
             }
 
             // Field under sub-section
-            if (inSub && subMap != null && isBold && (color == null || "000000".equalsIgnoreCase(color))) {
-                subMap.put(cellText.replaceAll(":$", "").trim(), null);
+            if (inSub && subMap != null && isBlackBold) {
+                subMap.put(TextSegments.stripLast(cellText, ':'), null);
+                METRICS.fieldExtracted();
                 continue;
             }
 
             // If another main section or sub-section is expected, reset
-            if (isBold && (color == null || "000000".equalsIgnoreCase(color)) && inMain && !expectSubSection) {
+            if (isBlackBold && inMain && !expectSubSection) {
                 // This is a new sub-section
                 if (currentSub != null && subMap != null) {
                     mainMap.put(currentSub, subMap);
                 }
-                currentSub = cellText.replaceAll(":$", "").trim();
+                currentSub = TextSegments.stripLast(cellText, ':');
                 subMap = new LinkedHashMap<>();
                 inSub = true;
                 continue;
@@ -97,7 +165,8 @@ public class WordFormParserNZ {
 
             // Fallback: treat as field under main if not in sub
             if (inMain && mainMap != null && !inSub) {
-                mainMap.put(cellText.replaceAll(":$", "").trim(), null);
+                mainMap.put(TextSegments.stripLast(cellText, ':'), null);
+                METRICS.fieldExtracted();
             }
         }
 
@@ -106,16 +175,34 @@ public class WordFormParserNZ {
             mainMap.put(currentSub, subMap);
         }
         if (currentMain != null && mainMap != null) {
-            result.put(currentMain, mainMap);
+            result.accept(currentMain, mainMap);
         }
+        METRICS.stage(ExtractionMetrics.Stage.TABLES, start);
+    }
 
-        return result;
+    private static RowStyle[] discoverRowStyles(List<XWPFTableRow> rows, String[] labels) {
+        RowStyle[] styles = new RowStyle[rows.size()];
+        for (int r = 0; r < rows.size(); r++) {
+            styles[r] = RowStyle.PLAIN;
+            if (labels[r] == null || labels[r].isEmpty()) continue;
+            boolean isBold = false;
+            String color = null;
+            for (XWPFParagraph para : rows.get(r).getTableCells().get(0).getParagraphs()) {
+                for (XWPFRun run : para.getRuns()) {
+                    if (run.isBold()) isBold = true;
+                    if (run.getColor() != null) color = run.getColor();
+                }
+            }
+            if (isBold && "FFFFFF".equalsIgnoreCase(color)) {
+                styles[r] = RowStyle.MAIN;
+            } else if (isBold && (color == null || "000000".equalsIgnoreCase(color))) {
+                styles[r] = RowStyle.BOLD;
+            }
+        }
+        return styles;
     }
 
     private static void printJson(Object obj) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        String json = mapper.writeValueAsString(obj);
-        System.out.println(json);
+        JsonOutput.print(obj);
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.example.demo.web;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.cache.ResultCache;
+
+/**
+ * Worker pool for the extraction endpoints. Both the pool and its queue are bounded; once the queue is full new
+ * work is rejected and the controller answers 429 instead of letting requests pile up on the heap.
+ */
+@Configuration
+public class ExtractionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor extractionExecutor(@Value("${extraction.workers:0}") int workers,
+                                                 @Value("${extraction.queue-capacity:16}") int queueCapacity) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = task -> {
+            Thread thread = new Thread(task, "extraction-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean
+    public ResultCache resultCache(@Value("${extraction.cache.memory-bytes:67108864}") long memoryBytes,
+                                   @Value("${extraction.cache.dir:}") String cacheDir) throws IOException {
+        return new ResultCache(memoryBytes, cacheDir.isEmpty() ? null : Paths.get(cacheDir));
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.demo.web;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.demo.cache.ResultCache;
+import com.example.demo.parser.DocumentExtractor;
+import com.example.demo.parser.FormSniffer;
+import com.example.demo.parser.FormType;
+import com.example.demo.parser.JsonOutput;
+import com.example.demo.parser.WordFormExtractor;
+import com.example.demo.parser.WordFormParser;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Upload endpoints for the form parsers. Uploads are spooled to temp files and looked up in the result cache by
+ * content digest; only misses are parsed, on the bounded extraction pool.
+ */
+@RestController
+@RequestMapping("/api/extract")
+public class ExtractionController {
+
+    private static final DocumentExtractor PARALLEL_MDIR = new WordFormExtractor(WordFormParser.Engine.PARALLEL);
+
+    private final ThreadPoolExecutor extractionExecutor;
+    private final ResultCache resultCache;
+    private final boolean parallelTables;
+
+    public ExtractionController(ThreadPoolExecutor extractionExecutor, ResultCache resultCache,
+                                @Value("${extraction.parallel-tables:false}") boolean parallelTables) {
+        this.extractionExecutor = extractionExecutor;
+        this.resultCache = resultCache;
+        this.parallelTables = parallelTables;
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void extract(@RequestParam("file") MultipartFile file,
+                        @RequestParam(value = "form", required = false) String form,
+                        HttpServletResponse response) throws Exception {
+        Path upload = spool(file);
+        try {
+            FormType formType = resolveFormType(upload, form);
+            byte[] json = await(lookupOrSubmit(upload, singleDocumentExtractor(formType)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            try (JsonGenerator generator = JsonOutput.createGenerator(response.getOutputStream(), true)) {
+                JsonOutput.copy(json, generator);
+            }
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    // At most one task per worker is in flight for a request, the next file being submitted as each result is
+    // written, so a batch never fills the queue by itself. A rejected first submission, before anything is written,
+    // answers 429. A later rejection waits for the request's earlier tasks to drain; only when none is left to wait
+    // for does the file get a queue-full error entry. Parsing therefore always stays on the bounded pool.
+    @PostMapping(path = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void extractAll(@RequestParam("files") List<MultipartFile> files,
+                           @RequestParam(value = "form", required = false) String form,
+                           HttpServletResponse response) throws Exception {
+        List<Path> uploads = new ArrayList<>();
+        List<FormType> formTypes = new ArrayList<>();
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        try {
+            for (MultipartFile file : files) {
+                Path upload = spool(file);
+                uploads.add(upload);
+                formTypes.add(resolveFormType(upload, form));
+            }
+            int window = Math.max(1, extractionExecutor.getMaximumPoolSize());
+            int next = 0;
+            if (!uploads.isEmpty()) {
+                inFlight.add(lookupOrSubmit(uploads.get(0), formTypes.get(0)));
+                next = 1;
+            }
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            try (JsonGenerator generator = JsonOutput.createGenerator(response.getOutputStream(), false)) {
+                generator.writeStartArray();
+                for (int i = 0; i < uploads.size(); i++) {
+                    for (; next < uploads.size() && inFlight.size() < window; next++) {
+                        try {
+                            inFlight.add(lookupOrSubmit(uploads.get(next), formTypes.get(next)));
+                        } catch (RejectedExecutionException e) {
+                            // Retried once the entry in front of it is written
+                            if (!inFlight.isEmpty()) break;
+                            inFlight.add(CompletableFuture.failedFuture(e));
+                        }
+                    }
+                    generator.writeStartObject();
+                    generator.writeStringField("file", files.get(i).getOriginalFilename());
+                    try {
+                        byte[] json = result(inFlight.remove());
+                        generator.writeFieldName("data");
+                        generator.writeRawValue(new String(json, StandardCharsets.UTF_8));
+                    } catch (ExecutionException e) {
+                        // Any failure of this document, Errors from the parser included, stays in its own entry
+                        generator.writeStringField("error", describe(e.getCause()));
+                    }
+                    generator.writeEndObject();
+                    generator.flush();
+                }
+                generator.writeEndArray();
+            }
+        } finally {
+            for (Future<byte[]> task : inFlight) {
+                task.cancel(true);
+            }
+            for (Path upload : uploads) {
+                Files.deleteIfExists(upload);
+            }
+        }
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryHits", resultCache.getMemoryHits());
+        stats.put("diskHits", resultCache.getDiskHits());
+        stats.put("misses", resultCache.getMisses());
+        stats.put("memoryEntries", resultCache.getMemoryEntries());
+        stats.put("memoryBytes", resultCache.getMemoryBytes());
+        return stats;
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, Object>> handleRejected(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("error", "Extraction queue is full, retry later"));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalid(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    // An explicit form wins; otherwise the upload is sniffed, and an unrecognised one is still tried as MDIR
+    private static FormType resolveFormType(Path upload, String form) throws IOException {
+        if (FormSniffer.isPdf(upload)) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                    "PDF extraction is not available in this build");
+        }
+        if (form != null) return FormType.fromId(form);
+        FormType detected = FormSniffer.detect(upload);
+        return detected != null ? detected : FormType.MDIR;
+    }
+
+    // The multipart part is already on disk (file-size-threshold=0). transferTo(File) hands the absolute path to
+    // Part.write, which Tomcat turns into a rename of that part file; transferTo(Path) would copy the stream instead.
+    private static Path spool(MultipartFile file) throws IOException {
+        Path upload = Files.createTempFile("extract-", ".upload");
+        try {
+            Files.delete(upload);
+            file.transferTo(upload.toFile());
+            return upload;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+    }
+
+    // A lone upload may also spread its MDIR tables over the common pool; batches are already parallel per document
+    private DocumentExtractor singleDocumentExtractor(FormType formType) {
+        return parallelTables && formType == FormType.MDIR ? PARALLEL_MDIR : formType;
+    }
+
+    // Cache hits complete immediately on the request thread and never take a worker. A failure to digest the upload
+    // is the document's own failure and comes back through the future; only a full pool is thrown.
+    private Future<byte[]> lookupOrSubmit(Path upload, DocumentExtractor extractor) {
+        String key;
+        try {
+            key = ResultCache.key(extractor, upload);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        byte[] cached = resultCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return extractionExecutor.submit(() -> {
+            byte[] json = extractor.extractJson(upload);
+            resultCache.put(key, json);
+            return json;
+        });
+    }
+
+    private static String describe(Throwable failure) {
+        if (failure instanceof RejectedExecutionException) return "Extraction queue is full, retry later";
+        return failure.getClass().getName() + ": " + failure.getMessage();
+    }
+
+    // The task's value; its failure, whatever the type, comes back as the ExecutionException
+    private static <T> T result(Future<T> task) throws ExecutionException, InterruptedException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static <T> T await(Future<T> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+}
@@ -1,26 +1,182 @@
 package com.ul.rams.controller;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.*;
 import java.util.AbstractMap;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.example.demo.parser.DocumentExtractor;
+import com.example.demo.parser.ExtractionMetrics;
+import com.example.demo.parser.FormLineClassifier;
+import com.example.demo.parser.JsonOutput;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.*;
 import org.apache.pdfbox.text.*;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
 import org.apache.pdfbox.pdmodel.interactive.form.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PdfDocFlatParser {
 
+    private static final Logger log = LoggerFactory.getLogger(PdfDocFlatParser.class);
+
+    // Per-document trace switch: when set, trace output is logged at INFO even if DEBUG is off for this logger
+    private static final ThreadLocal<Boolean> DOCUMENT_TRACE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    // Page-parallel text pass for the document being extracted on this thread, set only for documents read from a file
+    private static final ThreadLocal<PageChunks> PAGE_CHUNKS = new ThreadLocal<>();
+
+    private static final Pattern SECTION_PATTERN = Pattern.compile("^\\d+\\.\\s*([^-:\\n]+)");
+    private static final Pattern COMBINED_PATTERN = Pattern.compile("([A-Za-z0-9_ \\-/\\(\\)&\\[\\].,#*'’]+):\\s*([☒☑☐])" + "|"
+            + "([☒☑☐])\\s*([^☒☑☐:\\n]+?)(?=\\s*[☒☑☐]|\\s+[A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?:|:|$)" + "|"
+            + "([A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?):\\s*([^:]+?)(?=\\s+[A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?:|$)");
+    private static final Pattern LABEL_VALUE_LINE = Pattern.compile("^([A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?):\\s*(.*)$");
+    private static final Pattern TWO_COLONS = Pattern.compile(".*:.*:.*");
+    private static final Pattern HAS_CHECKBOX = Pattern.compile(".*[☒☑☐].*");
+    private static final Pattern HAS_LABEL_COLON = Pattern.compile(".*?:\\s*.*");
+    private static final Pattern TRAILING_HEADING_SPLIT = Pattern.compile(" (?=[A-Z][a-z]+( [A-Z][a-z]+)*[/:])");
+    private static final Pattern LEADING_PARENTHETICAL = Pattern.compile("^\\([^\\)]*\\)\\s*");
+    private static final Pattern LEADING_NON_ALNUM = Pattern.compile("^[^A-Za-z0-9]+");
+    private static final Pattern LABEL_WORD_SPLIT = Pattern.compile("\\s+|_");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SECTION_NUMBER = Pattern.compile("\\b\\d+\\.?\\b");
+    private static final Pattern MULTI_SPACE = Pattern.compile("\\s{2,}");
+    private static final Pattern PARENTHETICAL = Pattern.compile("\\(.*?\\)");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-zA-Z0-9]");
+    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{1,2}/\\d{1,2}/\\d{4})");
+    private static final Pattern TRAILING_NUMBER = Pattern.compile("^(.*?)(\\s+)(\\d+)$");
+    private static final Pattern STRONG_HEADING = Pattern.compile("^(Remedial Actions/Corrective Action/Preventive Action|Other Reporting Information)$");
+    private static final Pattern AGE_LABEL = Pattern.compile("^\\*?age:?$");
+    private static final Pattern WEIGHT_LABEL = Pattern.compile("^\\*?wt.\\(kg\\):?$");
+    private static final Pattern GENDER_LABEL = Pattern.compile("^\\*?m/f:?$");
+    private static final Pattern NO_WORD_CHARS = Pattern.compile("^\\W*$");
+    private static final Pattern UNIQUE_KEY_COUNT = Pattern.compile("_\\d+$");
+
+    private static final String[] SECTION_SPLITTERS = { " if ", " indicate", ":", "-", " please", " select", " choose",
+            " tick", " check" };
+    private static final Set<String> EVENT_PROBLEM_CHECKBOX_KEYS = Set.of("Hcp", "Other Caregiver", "Patient", "N/A");
+
+    // Boundary, grouping/instruction, label-prefix and trailing-grouping keywords, see form-vocabulary.properties
+    private static final FormLineClassifier LINE_CLASSIFIER = FormLineClassifier.forVocabulary("pdf");
+
+    // Matchers are reset per input instead of re-created; none of them is used re-entrantly.
+    private static final class RuleMatchers {
+        final Matcher section = SECTION_PATTERN.matcher("");
+        final Matcher combined = COMBINED_PATTERN.matcher("");
+        final Matcher labelValueLine = LABEL_VALUE_LINE.matcher("");
+        final Matcher twoColons = TWO_COLONS.matcher("");
+        final Matcher hasCheckbox = HAS_CHECKBOX.matcher("");
+        final Matcher hasLabelColon = HAS_LABEL_COLON.matcher("");
+        final Matcher leadingParenthetical = LEADING_PARENTHETICAL.matcher("");
+        final Matcher leadingNonAlnum = LEADING_NON_ALNUM.matcher("");
+        final Matcher sectionNumber = SECTION_NUMBER.matcher("");
+        final Matcher multiSpace = MULTI_SPACE.matcher("");
+        final Matcher parenthetical = PARENTHETICAL.matcher("");
+        final Matcher nonAlnum = NON_ALNUM.matcher("");
+        final Matcher date = DATE_PATTERN.matcher("");
+        final Matcher trailingNumber = TRAILING_NUMBER.matcher("");
+        final Matcher strongHeading = STRONG_HEADING.matcher("");
+        final Matcher ageLabel = AGE_LABEL.matcher("");
+        final Matcher weightLabel = WEIGHT_LABEL.matcher("");
+        final Matcher genderLabel = GENDER_LABEL.matcher("");
+        final Matcher noWordChars = NO_WORD_CHARS.matcher("");
+    }
+
+    private static final ThreadLocal<RuleMatchers> RULE_MATCHERS = ThreadLocal.withInitial(RuleMatchers::new);
+
+    private static final ExtractionMetrics METRICS = ExtractionMetrics.forForm("pdf");
+
+    /**
+     * How an AcroForm-first extraction got its fields: from the form fields alone, from the text of only the leading
+     * pages (cut after the last page with a missing field, or stopped once every missing key resolved), or from the
+     * text of every page.
+     */
+    public enum ExtractionPath {
+        ACROFORM_ONLY,
+        PARTIAL_TEXT,
+        FULL_TEXT;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Cleaned fields of an AcroForm-first extraction together with the path it took.
+     */
+    public static final class FormFirstResult {
+        private final LinkedHashMap<String, Object> data;
+        private final ExtractionPath path;
+
+        FormFirstResult(LinkedHashMap<String, Object> data, ExtractionPath path) {
+            this.data = data;
+            this.path = path;
+        }
+
+        public LinkedHashMap<String, Object> getData() {
+            return data;
+        }
+
+        public ExtractionPath getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Splits the text pass into at most parallelism page ranges that are stripped concurrently. A PDDocument must not
+     * be shared between threads, so every range but the first is stripped from a copy of the source file opened by
+     * its worker; that copy is parsed again, which is why ranges hold at least pagesPerChunk pages and a document
+     * shorter than two ranges is stripped in one pass. The first range is stripped from the open document straight
+     * into the parser; the text of the others is fed to the same parser in page order, so section, subgroup and
+     * narrative state, and a line split over two ranges, carry across as in one pass.
+     */
+    private static final class PageChunks {
+        final File source;
+        final int pagesPerChunk;
+        final int parallelism;
+
+        PageChunks(File source, int pagesPerChunk, int parallelism) {
+            this.source = source;
+            this.pagesPerChunk = pagesPerChunk;
+            this.parallelism = parallelism;
+        }
+
+        boolean splits(int lastPage) {
+            return parallelism > 1 && lastPage >= 2 * pagesPerChunk;
+        }
+    }
+
+    // Pages per range of the --parallel-pages run of main, which uses up to the common pool's parallelism in ranges
+    private static final int DEFAULT_PAGES_PER_CHUNK = 4;
+
+    // Heap PDFBox may use for one document's parsed objects; the rest spills to a scratch file
+    private static final long MAX_MAIN_MEMORY_BYTES = 16L * 1024 * 1024;
+
     public static void main(String[] args) throws IOException {
         String pdfPath = "src/main/resources/NZ_Adverse.pdf";
-        try (PDDocument document = PDDocument.load(new File(pdfPath))) {
-            System.out.println("[INFO] Starting extraction of document: " + pdfPath);
-            LinkedHashMap<String, Object> extractedData = extractDataFromDocument(document);
-            System.out.println("[INFO] Extraction complete. Outputting JSON:");
+        List<String> options = Arrays.asList(args);
+        boolean trace = options.contains("--trace");
+        File file = new File(pdfPath);
+        try (PDDocument document = open(file)) {
+            log.info("Starting extraction of document: {}", pdfPath);
+            LinkedHashMap<String, Object> extractedData;
+            if (options.contains("--parallel-pages")) {
+                extractedData = extractDataFromDocument(document, file, DEFAULT_PAGES_PER_CHUNK,
+                        ForkJoinPool.getCommonPoolParallelism());
+            } else if (options.contains("--form-first")) {
+                FormFirstResult formFirst = extractFormFirst(document, null, trace);
+                log.info("Extraction path: {}", formFirst.getPath());
+                extractedData = formFirst.getData();
+            } else {
+                extractedData = extractDataFromDocument(document, trace);
+            }
+            log.info("Extraction complete. Outputting JSON");
             printJson(extractedData);
 
             System.out.println("\n--- KEYS AND VALUES ---");
@@ -28,15 +184,497 @@ public class PdfDocFlatParser {
         }
     }
 
+    // Reads the file through random access rather than buffering it, with scratch-file backed object storage
+    public static PDDocument open(File file) throws IOException {
+        return PDDocument.load(file, MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES));
+    }
+
     public static LinkedHashMap<String, Object> extractDataFromDocument(PDDocument document) throws IOException {
+        return extractDataFromDocument(document, false);
+    }
+
+    public static LinkedHashMap<String, Object> extractDataFromDocument(PDDocument document, boolean trace)
+            throws IOException {
+        return extractDataFromDocument(document, null, trace);
+    }
+
+    // Projection onto the given NZ_... keys. The AcroForm fields and text lines that cannot produce them are skipped,
+    // and text extraction stops once every wanted key has a value and the section the last of them was found in has
+    // closed, so a label repeated within that section still overrides as in a full extraction. Only a section heading
+    // that recurs further down the form can still replace a value the projection no longer reads. Keys the AcroForm
+    // alone resolves skip the text pass.
+    public static LinkedHashMap<String, Object> extractDataFromDocument(PDDocument document, Set<String> wantedKeys)
+            throws IOException {
+        return extractDataFromDocument(document, wantedKeys, false);
+    }
+
+    private static LinkedHashMap<String, Object> extractDataFromDocument(PDDocument document, Set<String> wantedKeys,
+                                                                         boolean trace) throws IOException {
+        METRICS.begin();
+        boolean success = false;
+        try {
+            LinkedHashMap<String, Object> extracted;
+            if (!trace) {
+                extracted = extract(document, wantedKeys);
+            } else {
+                DOCUMENT_TRACE.set(Boolean.TRUE);
+                try {
+                    extracted = extract(document, wantedKeys);
+                } finally {
+                    DOCUMENT_TRACE.remove();
+                }
+            }
+            success = true;
+            return extracted;
+        } finally {
+            METRICS.end(success);
+        }
+    }
+
+    // Full extraction with the text pass split into up to parallelism page ranges of at least pagesPerChunk, stripped
+    // in parallel
+    public static LinkedHashMap<String, Object> extractDataFromFile(File file, int pagesPerChunk, int parallelism)
+            throws IOException {
+        try (PDDocument document = open(file)) {
+            return extractDataFromDocument(document, file, pagesPerChunk, parallelism);
+        }
+    }
+
+    // As extractDataFromFile for a document already opened from source, which the other ranges' workers open again
+    public static LinkedHashMap<String, Object> extractDataFromDocument(PDDocument document, File source,
+                                                                        int pagesPerChunk, int parallelism)
+            throws IOException {
+        PAGE_CHUNKS.set(new PageChunks(source, pagesPerChunk, parallelism));
+        try {
+            return extractDataFromDocument(document);
+        } finally {
+            PAGE_CHUNKS.remove();
+        }
+    }
+
+    // AcroForm first: text is only parsed for the expected keys the form fields left without a usable value, and an
+    // empty field is filled from the text under its own key, see collectFormFirst. With expectedKeys null the expected
+    // keys are the AcroForm's own fields; a document without any falls back to a full extraction. A key found in both
+    // keeps its form field value, where a full extraction takes the text's.
+    public static FormFirstResult extractFormFirst(PDDocument document, Set<String> expectedKeys) throws IOException {
+        return extractFormFirst(document, expectedKeys, false);
+    }
+
+    private static FormFirstResult extractFormFirst(PDDocument document, Set<String> expectedKeys, boolean trace)
+            throws IOException {
+        METRICS.begin();
+        boolean success = false;
+        if (trace) DOCUMENT_TRACE.set(Boolean.TRUE);
+        try {
+            LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+            Map<String, Boolean> mandatoryStatus = new HashMap<>();
+            ExtractionPath path = collectFormFirst(document, result, mandatoryStatus, expectedKeys);
+            long start = System.nanoTime();
+            LinkedHashMap<String, Object> cleaned = flattenAndCleanResult(result, mandatoryStatus);
+            METRICS.stage(ExtractionMetrics.Stage.FLATTEN, start);
+            success = true;
+            return new FormFirstResult(cleaned, path);
+        } finally {
+            if (trace) DOCUMENT_TRACE.remove();
+            METRICS.end(success);
+        }
+    }
+
+    // Writes the cleaned fields straight to the generator instead of materialising the flattened map
+    public static void writeJson(PDDocument document, JsonGenerator generator) throws IOException {
+        writeJson(document, false, null, generator);
+    }
+
+    private static void writeJson(PDDocument document, boolean formFirst, Set<String> expectedKeys,
+                                  JsonGenerator generator) throws IOException {
+        METRICS.begin();
+        boolean success = false;
+        try {
+            LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+            Map<String, Boolean> mandatoryStatus = new HashMap<>();
+            if (formFirst) {
+                collectFormFirst(document, result, mandatoryStatus, expectedKeys);
+            } else {
+                collect(document, result, mandatoryStatus, null);
+            }
+            generator.writeStartObject();
+            // Fields are written while they are cleaned; the writes are booked as serialization, the rest as flatten
+            long[] writeNanos = new long[1];
+            long start = System.nanoTime();
+            try {
+                cleanResult(result, mandatoryStatus, (key, value) -> {
+                    long written = System.nanoTime();
+                    try {
+                        generator.writeObjectField(key, value);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    writeNanos[0] += System.nanoTime() - written;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            METRICS.stageNanos(ExtractionMetrics.Stage.FLATTEN, System.nanoTime() - start - writeNanos[0]);
+            METRICS.stageNanos(ExtractionMetrics.Stage.SERIALIZE, writeNanos[0]);
+            generator.writeEndObject();
+            generator.flush();
+            success = true;
+        } finally {
+            METRICS.end(success);
+        }
+    }
+
+    /**
+     * {@link DocumentExtractor} view of this parser. Its only state is the immutable AcroForm-first and page-parallel
+     * settings, so one instance can be shared.
+     */
+    public static final class Extractor implements DocumentExtractor {
+        private final boolean formFirst;
+        private final Set<String> expectedKeys;
+        private final int pagesPerChunk;
+        private final int parallelism;
+
+        public Extractor() {
+            this(false, null, 0, 1);
+        }
+
+        private Extractor(boolean formFirst, Set<String> expectedKeys, int pagesPerChunk, int parallelism) {
+            this.formFirst = formFirst;
+            this.expectedKeys = expectedKeys;
+            this.pagesPerChunk = pagesPerChunk;
+            this.parallelism = parallelism;
+        }
+
+        // Whole-document extraction and JSON go through extractFormFirst; expectedKeys null uses the form's fields
+        public static Extractor formFirst(Set<String> expectedKeys) {
+            return new Extractor(true, expectedKeys == null ? null : Set.copyOf(expectedKeys), 0, 1);
+        }
+
+        // Documents given as a Path are stripped in up to parallelism page ranges of at least pagesPerChunk in
+        // parallel; streams, which cannot be opened once per worker, are still stripped in one pass. The output is
+        // the same either way. Callers that already extract several documents at once should pass a parallelism
+        // that leaves room for them.
+        public Extractor withParallelPages(int pagesPerChunk, int parallelism) {
+            if (pagesPerChunk < 1) {
+                throw new IllegalArgumentException("pagesPerChunk must be positive: " + pagesPerChunk);
+            }
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+            }
+            return new Extractor(formFirst, expectedKeys, pagesPerChunk, parallelism);
+        }
+
+        // The AcroForm-first output differs, so it is cached apart from full extractions
+        @Override
+        public String getId() {
+            return formFirst ? "pdf-acroform" : "pdf";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public LinkedHashMap<String, Object> extract(InputStream in) throws IOException {
+            return measured(() -> PDDocument.load(in, MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES)), null,
+                    this::extractWhole);
+        }
+
+        @Override
+        public LinkedHashMap<String, Object> extract(Path document) throws IOException {
+            return measured(() -> open(document.toFile()), document.toFile(), this::extractWhole);
+        }
+
+        @Override
+        public LinkedHashMap<String, Object> extract(InputStream in, Set<String> wantedKeys) throws IOException {
+            return measured(() -> PDDocument.load(in, MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES)), null,
+                    document -> extractProjected(document, wantedKeys));
+        }
+
+        @Override
+        public LinkedHashMap<String, Object> extract(Path document, Set<String> wantedKeys) throws IOException {
+            return measured(() -> open(document.toFile()), document.toFile(),
+                    pdDocument -> extractProjected(pdDocument, wantedKeys));
+        }
+
+        @Override
+        public void writeJson(InputStream in, JsonGenerator generator) throws IOException {
+            measured(() -> PDDocument.load(in, MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES)), null,
+                    document -> {
+                        PdfDocFlatParser.writeJson(document, formFirst, expectedKeys, generator);
+                        return null;
+                    });
+        }
+
+        @Override
+        public void writeJson(Path document, JsonGenerator generator) throws IOException {
+            measured(() -> open(document.toFile()), document.toFile(), pdDocument -> {
+                PdfDocFlatParser.writeJson(pdDocument, formFirst, expectedKeys, generator);
+                return null;
+            });
+        }
+
+        private LinkedHashMap<String, Object> extractWhole(PDDocument document) throws IOException {
+            return formFirst ? extractFormFirst(document, expectedKeys).getData() : extractDataFromDocument(document);
+        }
+
+        // AcroForm first, the wanted keys are the expected ones: only those the form fields leave empty reach the text
+        private LinkedHashMap<String, Object> extractProjected(PDDocument document, Set<String> wantedKeys)
+                throws IOException {
+            if (wantedKeys == null) return extractWhole(document);
+            if (!formFirst) return extractDataFromDocument(document, wantedKeys);
+            LinkedHashMap<String, Object> data = extractFormFirst(document, wantedKeys).getData();
+            data.keySet().retainAll(wantedKeys);
+            return data;
+        }
+
+        private interface Loader {
+            PDDocument load() throws IOException;
+        }
+
+        private interface DocumentBody<T> {
+            T apply(PDDocument document) throws IOException;
+        }
+
+        // Loading counts towards the same document as the extraction, as the open stage. source is the file the
+        // document was loaded from, or null for a stream.
+        private <T> T measured(Loader loader, File source, DocumentBody<T> body) throws IOException {
+            METRICS.begin();
+            boolean success = false;
+            if (source != null && pagesPerChunk > 0) {
+                PAGE_CHUNKS.set(new PageChunks(source, pagesPerChunk, parallelism));
+            }
+            try {
+                long start = System.nanoTime();
+                try (PDDocument document = loader.load()) {
+                    METRICS.stage(ExtractionMetrics.Stage.OPEN, start);
+                    T result = body.apply(document);
+                    success = true;
+                    return result;
+                }
+            } finally {
+                PAGE_CHUNKS.remove();
+                METRICS.end(success);
+            }
+        }
+    }
+
+    private static LinkedHashMap<String, Object> extract(PDDocument document, Set<String> wantedKeys)
+            throws IOException {
         LinkedHashMap<String, Object> result = new LinkedHashMap<>();
         Map<String, Boolean> mandatoryStatus = new HashMap<>();
+        collect(document, result, mandatoryStatus, wantedKeys);
+        if (wantedKeys != null) result.keySet().retainAll(wantedKeys);
+        long start = System.nanoTime();
+        LinkedHashMap<String, Object> cleaned = flattenAndCleanResult(result, mandatoryStatus);
+        METRICS.stage(ExtractionMetrics.Stage.FLATTEN, start);
+        return cleaned;
+    }
+
+    // wantedKeys may be null to collect everything
+    private static void collect(PDDocument document, Map<String, Object> result, Map<String, Boolean> mandatoryStatus,
+                                Set<String> wantedKeys) throws IOException {
+        collectAcroForm(document, result, mandatoryStatus, wantedKeys, null);
+        long start = System.nanoTime();
+        SectionParser parser = new SectionParser(result, mandatoryStatus, wantedKeys);
+        if (!parser.valuesResolved()) {
+            stripText(document, parser, Integer.MAX_VALUE);
+        }
+        METRICS.stage(ExtractionMetrics.Stage.TEXT, start);
+    }
+
+    // Text is parsed into a map of its own and never overrides a form field value. Pages before the first missing
+    // field are still stripped: the section and subgroup the text keys are built from run across pages.
+    // An expected key that is an AcroForm field (NZ_Label) is looked for in the text by its label, as the text keys
+    // also carry the section (NZ_Section_Subgroup_Label): the first usable text value under that label fills the
+    // field's key. Any other expected key is a text key and taken over as it is. The text pass stops once every
+    // missing key has its value and the section holding the last of them has closed.
+    private static ExtractionPath collectFormFirst(PDDocument document, Map<String, Object> result,
+                                                   Map<String, Boolean> mandatoryStatus, Set<String> expectedKeys)
+            throws IOException {
+        Map<String, PDField> fields = new HashMap<>();
+        collectAcroForm(document, result, mandatoryStatus, null, fields);
+        if (expectedKeys == null && fields.isEmpty()) {
+            long start = System.nanoTime();
+            stripText(document, new SectionParser(result, mandatoryStatus, null), Integer.MAX_VALUE);
+            METRICS.stage(ExtractionMetrics.Stage.TEXT, start);
+            return reportPath(ExtractionPath.FULL_TEXT);
+        }
+
+        int pageCount = document.getNumberOfPages();
+        Set<String> missingKeys = new LinkedHashSet<>();
+        Set<String> missingFields = new LinkedHashSet<>();
+        int endPage = 0;
+        for (String key : expectedKeys != null ? expectedKeys : fields.keySet()) {
+            if (isValidValue(result.get(key), key)) continue;
+            PDField field = fields.get(key);
+            if (field != null) {
+                missingFields.add(key);
+                endPage = Math.max(endPage, lastPage(document, field));
+            } else {
+                missingKeys.add(key);
+                endPage = pageCount;
+            }
+        }
+        if (missingKeys.isEmpty() && missingFields.isEmpty()) return reportPath(ExtractionPath.ACROFORM_ONLY);
+        if (tracing()) {
+            trace("Missing after AcroForm: fields {}, text keys {}, stripping pages 1-{} of {}", missingFields,
+                    missingKeys, endPage, pageCount);
+        }
+
+        long start = System.nanoTime();
+        Map<String, Object> text = new LinkedHashMap<>();
+        Map<String, Boolean> textMandatory = new HashMap<>();
+        SectionParser parser = new SectionParser(text, textMandatory, missingKeys, missingFields);
+        boolean stopped = stripText(document, parser, endPage);
+        for (String key : missingKeys) {
+            Object value = text.get(key);
+            if (!isValidValue(value, key)) continue;
+            result.put(key, value);
+            Boolean mandatory = textMandatory.get(key);
+            if (mandatory != null) mandatoryStatus.put(key, mandatory);
+        }
+        for (String field : missingFields) {
+            Entry<String, Object> answer = answerOf(text, field);
+            if (answer == null) continue;
+            if (tracing()) trace("AcroForm field {} answered by text key {}", field, answer.getKey());
+            result.put(field, answer.getValue());
+        }
+        METRICS.stage(ExtractionMetrics.Stage.TEXT, start);
+        return reportPath(stopped || endPage < pageCount ? ExtractionPath.PARTIAL_TEXT : ExtractionPath.FULL_TEXT);
+    }
+
+    // Whether a text key carries the label of an AcroForm key: NZ_Phone is answered by NZ_Patient_Details_Phone, by
+    // a makeUniqueKey repeat such as NZ_Patient_Details_Phone_2, and by a text key without a section, NZ_Phone itself
+    private static boolean answers(String textKey, String fieldKey) {
+        if (fieldKey.length() <= "NZ_".length()) return false;
+        String base = UNIQUE_KEY_COUNT.matcher(textKey).replaceFirst("");
+        String label = "_" + fieldKey.substring("NZ_".length());
+        return textKey.equals(fieldKey) || base.equals(fieldKey) || textKey.endsWith(label) || base.endsWith(label);
+    }
+
+    // First text key in document order that answers the AcroForm key with a usable value, or null
+    private static Entry<String, Object> answerOf(Map<String, Object> text, String fieldKey) {
+        for (Entry<String, Object> entry : text.entrySet()) {
+            if (answers(entry.getKey(), fieldKey) && isValidValue(entry.getValue(), fieldKey)) return entry;
+        }
+        return null;
+    }
+
+    private static ExtractionPath reportPath(ExtractionPath path) {
+        METRICS.path(path.tag);
+        if (tracing()) trace("Extraction path: {}", path);
+        return path;
+    }
+
+    // Last page (1-based) with one of the field's widgets; a widget without a page reference counts as the last page
+    private static int lastPage(PDDocument document, PDField field) {
+        int pageCount = document.getNumberOfPages();
+        int last = 0;
+        for (PDAnnotationWidget widget : field.getWidgets()) {
+            PDPage page = widget.getPage();
+            int index = page != null ? document.getPages().indexOf(page) : -1;
+            if (index < 0) return pageCount;
+            last = Math.max(last, index + 1);
+        }
+        return last > 0 ? last : pageCount;
+    }
+
+    // The stripper writes page by page into the line feed, so the full text is never built as one String. Returns
+    // true if the parser resolved its wanted keys before endPage.
+    private static boolean stripText(PDDocument document, SectionParser parser, int endPage) throws IOException {
+        PageChunks chunks = PAGE_CHUNKS.get();
+        int lastPage = Math.min(endPage, document.getNumberOfPages());
+        if (chunks != null && chunks.splits(lastPage)) {
+            return stripChunked(document, parser, lastPage, chunks);
+        }
+        LineFeed lines = new LineFeed(parser);
+        PDFTextStripper stripper = new FeedStripper(lines);
+        stripper.setEndPage(endPage);
+        stripper.writeText(document, lines);
+        lines.close();
+        return stoppedEarly(lines);
+    }
+
+    private static boolean stoppedEarly(LineFeed lines) {
+        if (lines.isDone() && tracing()) trace("All wanted keys resolved, text extraction stopped early");
+        return lines.isDone();
+    }
+
+    // Leaves the pages after the one the parser resolved on unprocessed, so the stripper runs out its page loop
+    // without extracting their text
+    private static final class FeedStripper extends PDFTextStripper {
+        private final LineFeed lines;
+
+        FeedStripper(LineFeed lines) throws IOException {
+            this.lines = lines;
+        }
+
+        @Override
+        public void processPage(PDPage page) throws IOException {
+            if (!lines.isDone()) super.processPage(page);
+        }
+    }
+
+    // Ranges after the first are forked before the first is stripped here, and joined in page order as the parser
+    // reaches them; ranges not yet started are cancelled once the parser resolves or fails. On a fork/join worker the
+    // ranges go to that worker's pool and are no more than its parallelism, otherwise they go to the common pool.
+    private static boolean stripChunked(PDDocument document, SectionParser parser, int lastPage, PageChunks chunks)
+            throws IOException {
+        int workers = chunks.parallelism;
+        if (ForkJoinTask.inForkJoinPool()) workers = Math.min(workers, ForkJoinTask.getPool().getParallelism());
+        int chunkSize = Math.max(chunks.pagesPerChunk, (lastPage + workers - 1) / workers);
+        List<ForkJoinTask<String>> ranges = new ArrayList<>();
+        for (int first = chunkSize + 1; first <= lastPage; first += chunkSize) {
+            int startPage = first;
+            int endPage = Math.min(first + chunkSize - 1, lastPage);
+            ranges.add(ForkJoinTask.adapt(() -> stripPages(chunks.source, startPage, endPage)).fork());
+        }
+        if (tracing()) trace("Stripping pages 1-{} in {} ranges of {}", lastPage, ranges.size() + 1, chunkSize);
+        LineFeed lines = new LineFeed(parser);
+        try {
+            PDFTextStripper stripper = new FeedStripper(lines);
+            stripper.setEndPage(chunkSize);
+            stripper.writeText(document, lines);
+            for (ForkJoinTask<String> range : ranges) {
+                if (lines.isDone()) break;
+                lines.write(range.join());
+            }
+            lines.close();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<String> range : ranges) {
+                range.cancel(false);
+            }
+        }
+        return stoppedEarly(lines);
+    }
 
+    private static String stripPages(File source, int startPage, int endPage) {
+        try (PDDocument copy = open(source)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(startPage);
+            stripper.setEndPage(endPage);
+            return stripper.getText(copy);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // fields, if given, receives each field under its key
+    private static void collectAcroForm(PDDocument document, Map<String, Object> result,
+                                        Map<String, Boolean> mandatoryStatus, Set<String> wantedKeys,
+                                        Map<String, PDField> fields) {
+        long start = System.nanoTime();
         PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
         if (acroForm != null) {
             for (PDField field : acroForm.getFields()) {
                 Entry<String, Boolean> labelAndMandatory = extractLabelAndMandatory(field.getFullyQualifiedName());
                 String key = buildNZKey(labelAndMandatory.getKey());
+                if (wantedKeys != null && !wantedKeys.contains(key)) continue;
+                if (fields != null) fields.put(key, field);
                 String value = cleanValue(field.getValueAsString());
                 boolean isMandatory = labelAndMandatory.getValue();
                 mandatoryStatus.put(key, isMandatory);
@@ -46,52 +684,97 @@ public class PdfDocFlatParser {
                     if (isMandatory) {
                         Map<String, Object> valueObj = Map.of("value", checked, "mandatory", true);
                         result.put(key, valueObj);
-                        System.out.println("[SYSOUT] AcroForm (mandatory checkbox): " + key + " = " + valueObj);
+                        if (tracing()) trace("AcroForm (mandatory checkbox): {} = {}", key, valueObj);
                     } else {
                         result.put(key, checked);
-                        System.out.println("[SYSOUT] AcroForm (checkbox): " + key + " = " + checked);
+                        if (tracing()) trace("AcroForm (checkbox): {} = {}", key, checked);
                     }
                 } else if (isValidValue(value, key)) {
                     if (isMandatory) {
                         Map<String, Object> valueObj = Map.of("value", value, "mandatory", true);
                         result.put(key, valueObj);
-                        System.out.println("[SYSOUT] AcroForm (mandatory text): " + key + " = " + valueObj);
+                        if (tracing()) trace("AcroForm (mandatory text): {} = {}", key, valueObj);
                     } else {
                         result.put(key, value);
-                        System.out.println("[SYSOUT] AcroForm (text): " + key + " = " + value);
+                        if (tracing()) trace("AcroForm (text): {} = {}", key, value);
                     }
+                } else if (value != null && !value.trim().isEmpty()) {
+                    METRICS.valueRejected();
                 }
             }
         }
+        METRICS.stage(ExtractionMetrics.Stage.ACROFORM, start);
+    }
 
-        PDFTextStripper stripper = new PDFTextStripper();
-        String text = stripper.getText(document);
-        parseTextSections(text, result, mandatoryStatus);
+    // Line-by-line section state machine over the stripped text. Each line comes with the raw line after it (the
+    // only lookahead the rules need); accept returns true when that next line was consumed as a value.
+    private static final class SectionParser {
+        private final Map<String, Object> result;
+        private final Map<String, Boolean> mandatoryStatus;
+        private final Set<String> wantedKeys;
+        private final Set<String> wantedFields;
+        private int checkedSize = -1;
+        private String checkedLastKey;
+        private boolean valuesResolved;
+        private String previousSection, resolvedSection;
+        private final RuleMatchers rules = RULE_MATCHERS.get();
+        private final Map<String, Integer> labelCountMap = new HashMap<>();
+        private final StringBuilder narrativeBuilder = new StringBuilder();
+        private String section, lastKey, currentSubgroup;
+        private boolean inNarrative = false;
+        private boolean justSawEventProblemCheckboxes = false;
 
-        return flattenAndCleanResult(result, mandatoryStatus);
-    }
+        SectionParser(Map<String, Object> result, Map<String, Boolean> mandatoryStatus, Set<String> wantedKeys) {
+            this(result, mandatoryStatus, wantedKeys, Collections.emptySet());
+        }
 
-    private static void parseTextSections(String text, Map<String, Object> result, Map<String, Boolean> mandatoryStatus) {
-        String[] lines = text.split("\\r?\\n");
-        String section = null, lastKey = null, currentSubgroup = null;
-        boolean inNarrative = false;
-        StringBuilder narrativeBuilder = new StringBuilder();
+        // wantedFields are AcroForm keys, wanted as any text key that answers them, see answers
+        SectionParser(Map<String, Object> result, Map<String, Boolean> mandatoryStatus, Set<String> wantedKeys,
+                      Set<String> wantedFields) {
+            this.result = result;
+            this.mandatoryStatus = mandatoryStatus;
+            this.wantedKeys = wantedKeys;
+            this.wantedFields = wantedFields;
+        }
 
-        Pattern sectionPattern = Pattern.compile("^\\d+\\.\\s*([^-:\\n]+)");
-        Pattern combinedPattern = Pattern.compile("([A-Za-z0-9_ \\-/\\(\\)&\\[\\].,#*'’]+):\\s*([☒☑☐])" + "|"
-                + "([☒☑☐])\\s*([^☒☑☐:\\n]+?)(?=\\s*[☒☑☐]|\\s+[A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?:|:|$)" + "|"
-                + "([A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?):\\s*([^:]+?)(?=\\s+[A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?:|$)");
+        // Every wanted key has a usable value and none is still collecting narrative text; never true without keys.
+        // Only re-evaluated once a key was added or the current key moved on; the checks are costly per line.
+        boolean valuesResolved() {
+            if (wantedKeys == null) return false;
+            if (result.size() == checkedSize && Objects.equals(lastKey, checkedLastKey)) return false;
+            checkedSize = result.size();
+            checkedLastKey = lastKey;
+            if (lastKey != null && wantedKeys.contains(lastKey)) return false;
+            for (String key : wantedKeys) {
+                if (!isValidValue(result.get(key), key)) return false;
+            }
+            for (String field : wantedFields) {
+                if (lastKey != null && answers(lastKey, field)) return false;
+                if (answerOf(result, field) == null) return false;
+            }
+            return true;
+        }
 
-        Map<String, Integer> labelCountMap = new HashMap<>();
-        boolean justSawEventProblemCheckboxes = false;
-        Set<String> eventProblemCheckboxKeys = Set.of("Hcp", "Other Caregiver", "Patient", "N/A");
+        // The text may stop: the wanted keys resolved and the section they resolved in has since closed, so a later
+        // line of it can no longer replace one of their values. Called after every line; keys that resolve on the
+        // heading opening a new section, which flushes the last one, belong to the section it closed.
+        boolean resolved() {
+            if (!valuesResolved) {
+                String before = previousSection;
+                previousSection = section;
+                if (!valuesResolved()) return false;
+                valuesResolved = true;
+                resolvedSection = Objects.equals(section, before) ? section : before;
+            }
+            return !Objects.equals(section, resolvedSection);
+        }
 
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
-            System.out.println("Line: " + line);
-            if (line.isEmpty()) continue;
+        boolean accept(String rawLine, String rawNext) {
+            String line = rawLine.trim();
+            if (tracing()) trace("Line: {}", line);
+            if (line.isEmpty()) return false;
 
-            Matcher sectionMatcher = sectionPattern.matcher(line);
+            Matcher sectionMatcher = rules.section.reset(line);
             if (sectionMatcher.find()) {
                 flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
                 section = normalizeSectionName(sectionMatcher.group(1));
@@ -99,10 +782,14 @@ public class PdfDocFlatParser {
                 inNarrative = false;
                 lastKey = null;
                 justSawEventProblemCheckboxes = false;
-                System.out.println("[INFO] Section detected: " + section);
-                continue;
+                if (tracing()) trace("Section detected: {}", section);
+                return false;
             }
 
+            int lineFlags = LINE_CLASSIFIER.classify(line);
+            boolean lineIsTableBoundary = (lineFlags & FormLineClassifier.TABLE_BOUNDARY) != 0;
+            boolean lineIsGrouping = (lineFlags & FormLineClassifier.GROUPING_OR_INSTRUCTION) != 0;
+
             if (isStrongHeading(line)) {
                 flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
                 section = normalizeSectionName(line);
@@ -110,55 +797,55 @@ public class PdfDocFlatParser {
                 inNarrative = false;
                 lastKey = null;
                 justSawEventProblemCheckboxes = false;
-                System.out.println("[INFO] Custom heading detected: " + section);
-                continue;
+                if (tracing()) trace("Custom heading detected: {}", section);
+                return false;
             }
 
-            if (isTableBoundary(line)) {
+            if (lineIsTableBoundary) {
                 flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
                 inNarrative = false;
                 lastKey = null;
                 justSawEventProblemCheckboxes = false;
             }
 
-            if (line.endsWith(":") && line.length() > 3 && !line.matches(".*:.*:.*")) {
+            if (line.endsWith(":") && line.length() > 3 && !rules.twoColons.reset(line).matches()) {
                 boolean foundGroup = false;
-                if (i + 1 < lines.length) {
-                    String nextLine = lines[i + 1].trim();
-                    if (!nextLine.isEmpty() && (nextLine.matches(".*[☒☑☐].*") || nextLine.matches(".*?:\\s*.*"))) {
+                if (rawNext != null) {
+                    String nextLine = rawNext.trim();
+                    if (!nextLine.isEmpty() && (rules.hasCheckbox.reset(nextLine).matches() || rules.hasLabelColon.reset(nextLine).matches())) {
                         foundGroup = true;
                     }
                 }
                 if (foundGroup) {
                     currentSubgroup = normalizeSectionName(line.replace(":", "").trim());
-                    System.out.println("[INFO] Subgroup detected: " + currentSubgroup);
-                    continue;
+                    if (tracing()) trace("Subgroup detected: {}", currentSubgroup);
+                    return false;
                 }
             }
 
             if (justSawEventProblemCheckboxes) {
-                if (!looksLikeGroupingOrInstruction(line) && !isLikelyLabelOrHeader(line)
-                        && !line.matches(".*[☒☑☐].*")) {
+                if (!lineIsGrouping && !isLikelyLabelOrHeader(line)
+                        && !rules.hasCheckbox.reset(line).matches()) {
                     if ("Description Of The Clinical Event Problem"
                             .equalsIgnoreCase(section.replace("_", " ").trim())) {
                         String narrativeKey = buildNZKey(section, currentSubgroup, "Narrative");
                         result.put(narrativeKey, cleanValue(line));
-                        System.out.println("[SYSOUT] Assigned clinical event narrative to key: " + narrativeKey + " => " + line);
+                        if (tracing()) trace("Assigned clinical event narrative to key: {} => {}", narrativeKey, line);
                         justSawEventProblemCheckboxes = false;
                     }
                 }
             }
 
             if (inNarrative && lastKey != null) {
-                if (line.isEmpty()) continue;
-                if (looksLikeGroupingOrInstruction(line) || isTableBoundary(line)) {
+                if (line.isEmpty()) return false;
+                if (lineIsGrouping || lineIsTableBoundary) {
                     if (narrativeBuilder.length() > 0) {
                         flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
                     }
                     inNarrative = false;
                     lastKey = null;
-                    System.out.println("[DEBUG] Skipping heading/grouping/table-boundary in narrative: " + line);
-                    continue;
+                    if (tracing()) trace("Skipping heading/grouping/table-boundary in narrative: {}", line);
+                    return false;
                 }
                 if ((line.endsWith(":") && line.length() > 1)
                         || line.contains("Remedial Actions/Corrective Action/Preventive Action")) {
@@ -171,10 +858,10 @@ public class PdfDocFlatParser {
                     lastKey = newKey;
                     mandatoryStatus.put(lastKey, labelAndMandatory.getValue());
                     inNarrative = true;
-                    System.out.println("[DEBUG] Narrative start for: " + lastKey + (labelAndMandatory.getValue() ? " [mandatory]" : ""));
-                    continue;
+                    if (tracing()) trace("Narrative start for: {}{}", lastKey, (labelAndMandatory.getValue() ? " [mandatory]" : ""));
+                    return false;
                 }
-                Matcher m = Pattern.compile("^([A-Za-z0-9_\\-/\\(\\)&\\[\\].,#*'’ ]+?):\\s*(.*)$").matcher(line);
+                Matcher m = rules.labelValueLine.reset(line);
                 if (m.find()) {
                     if (narrativeBuilder.length() > 0) {
                         flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
@@ -190,31 +877,31 @@ public class PdfDocFlatParser {
                         keyBase = keyBase.replace("_M_F", "_Gender");
                         key = keyBase;
                         parsedValue = extractGender(value);
-                        System.out.println("[SYSOUT] Gender key normalized: " + key + " = " + parsedValue);
+                        if (tracing()) trace("Gender key normalized: {} = {}", key, parsedValue);
                     }
                     if (labelAndMandatory.getValue()) {
                         Map<String, Object> valueObj = Map.of("value", parsedValue, "mandatory", true);
                         result.put(key, valueObj);
-                        System.out.println("[SYSOUT] Label:Value (mandatory/narrative): " + key + " = " + valueObj);
+                        if (tracing()) trace("Label:Value (mandatory/narrative): {} = {}", key, valueObj);
                     } else {
                         result.put(key, parsedValue);
-                        System.out.println("[SYSOUT] Label:Value (narrative): " + key + " = " + parsedValue);
+                        if (tracing()) trace("Label:Value (narrative): {} = {}", key, parsedValue);
                     }
                     lastKey = key;
                     inNarrative = false;
-                    continue;
+                    return false;
                 }
                 if (narrativeBuilder.length() > 0) narrativeBuilder.append(" ");
                 narrativeBuilder.append(line);
-                continue;
+                return false;
             }
 
-            if (looksLikeGroupingOrInstruction(line)) {
-                System.out.println("[DEBUG] Skipping grouping/instructional line: " + line);
-                continue;
+            if (lineIsGrouping) {
+                if (tracing()) trace("Skipping grouping/instructional line: {}", line);
+                return false;
             }
 
-            Matcher matcher = combinedPattern.matcher(line);
+            Matcher matcher = rules.combined.reset(line);
             boolean matchedAny = false;
             boolean allCheckBoxLine = true;
             Set<String> foundCheckboxLabels = new HashSet<>();
@@ -229,8 +916,8 @@ public class PdfDocFlatParser {
                     result.put(key, isChecked);
                     mandatoryStatus.put(key, false);
                     lastKey = key;
-                    System.out.println("[DEBUG] Checkbox (colon) detected: " + key + " = " + isChecked);
-                    if (eventProblemCheckboxKeys.contains(label.trim())) foundCheckboxLabels.add(label.trim());
+                    if (tracing()) trace("Checkbox (colon) detected: {} = {}", key, isChecked);
+                    if (EVENT_PROBLEM_CHECKBOX_KEYS.contains(label.trim())) foundCheckboxLabels.add(label.trim());
                     else allCheckBoxLine = false;
                 } else if (matcher.group(3) != null && matcher.group(4) != null) {
                     String checkedBox = matcher.group(3);
@@ -241,14 +928,14 @@ public class PdfDocFlatParser {
                     result.put(key, isChecked);
                     mandatoryStatus.put(key, false);
                     lastKey = key;
-                    System.out.println("[DEBUG] Checkbox (symbol) detected: " + key + " = " + isChecked);
-                    if (eventProblemCheckboxKeys.contains(label.trim())) foundCheckboxLabels.add(label.trim());
+                    if (tracing()) trace("Checkbox (symbol) detected: {} = {}", key, isChecked);
+                    if (EVENT_PROBLEM_CHECKBOX_KEYS.contains(label.trim())) foundCheckboxLabels.add(label.trim());
                     else allCheckBoxLine = false;
                 } else if (matcher.group(5) != null && matcher.group(6) != null) {
                     String label = matcher.group(5);
                     String rawValue = matcher.group(6);
                     if (looksLikeGroupingOrInstruction(label) || looksLikeGroupingOrInstruction(rawValue)) {
-                        System.out.println("[DEBUG] Skipping label:value as one side looks like a heading/grouping: " + label + " : " + rawValue);
+                        if (tracing()) trace("Skipping label:value as one side looks like a heading/grouping: {} : {}", label, rawValue);
                         continue;
                     }
                     Entry<String, Boolean> labelAndMandatory = extractLabelAndMandatory(label.trim());
@@ -257,16 +944,16 @@ public class PdfDocFlatParser {
                     mandatoryStatus.put(key, labelAndMandatory.getValue());
 
                     String valueStr = cleanValue(rawValue.trim());
-                    String[] valueParts = valueStr.split(" (?=[A-Z][a-z]+( [A-Z][a-z]+)*[/:])", 2);
+                    String[] valueParts = TRAILING_HEADING_SPLIT.split(valueStr, 2);
                     Object value;
                     if (valueParts.length > 1 && looksLikeGroupingOrInstruction(valueParts[1])) {
                         value = removeTrailingGroupingText(valueParts[0].trim());
-                        System.out.println("[DEBUG] Label:Value detected with trailing heading: " + key + " = " + value);
+                        if (tracing()) trace("Label:Value detected with trailing heading: {} = {}", key, value);
                         result.put(key, value);
                         String newKey = buildNZKey(section, currentSubgroup, valueParts[1].trim());
                         lastKey = makeUniqueKey(newKey, labelCountMap);
                         inNarrative = true;
-                        System.out.println("[DEBUG] New heading detected after label:value: " + lastKey);
+                        if (tracing()) trace("New heading detected after label:value: {}", lastKey);
                         continue;
                     } else {
                         value = parsePossibleBooleanOrDate(valueStr, labelAndMandatory.getKey());
@@ -274,18 +961,18 @@ public class PdfDocFlatParser {
                             keyBase = keyBase.replace("_M_F", "_Gender");
                             key = keyBase;
                             value = extractGender(valueStr);
-                            System.out.println("[SYSOUT] Gender key normalized: " + key + " = " + value);
+                            if (tracing()) trace("Gender key normalized: {} = {}", key, value);
                         }
                         if (value instanceof String) value = removeTrailingGroupingText((String) value);
                     }
-                    System.out.println("[DEBUG] Label:Value detected: " + key + " = " + value);
+                    if (tracing()) trace("Label:Value detected: {} = {}", key, value);
                     if (isValidValue(value, key)) {
                         if (labelAndMandatory.getValue()) {
                             Map<String, Object> valueObj = Map.of("value", value, "mandatory", true);
-                            System.out.println("[DEBUG] Label:Value extracted (mandatory): " + key + " => " + valueObj);
+                            if (tracing()) trace("Label:Value extracted (mandatory): {} => {}", key, valueObj);
                             result.put(key, valueObj);
                         } else {
-                            System.out.println("[DEBUG] Label:Value extracted: " + key + " => " + value);
+                            if (tracing()) trace("Label:Value extracted: {} => {}", key, value);
                             result.put(key, value);
                         }
                         lastKey = key;
@@ -297,7 +984,7 @@ public class PdfDocFlatParser {
                     && "Description Of The Clinical Event Problem".equalsIgnoreCase(section.replace("_", " ").trim())) {
                 if (!foundCheckboxLabels.isEmpty()) {
                     justSawEventProblemCheckboxes = true;
-                    System.out.println("[DEBUG] Detected block of event problem checkboxes");
+                    if (tracing()) trace("Detected block of event problem checkboxes");
                 }
             } else if (matchedAny) {
                 justSawEventProblemCheckboxes = false;
@@ -312,20 +999,20 @@ public class PdfDocFlatParser {
                 lastKey = key;
                 mandatoryStatus.put(key, labelAndMandatory.getValue());
                 inNarrative = true;
-                System.out.println("[DEBUG] Narrative start for: " + lastKey + (labelAndMandatory.getValue() ? " [mandatory]" : ""));
-                continue;
+                if (tracing()) trace("Narrative start for: {}{}", lastKey, (labelAndMandatory.getValue() ? " [mandatory]" : ""));
+                return false;
             }
 
-            if (!matchedAny && isTableBoundary(line) && i + 1 < lines.length) {
-                String nextLine = lines[i + 1].trim();
-                if (!nextLine.isEmpty() && !isTableBoundary(nextLine) && !looksLikeGroupingOrInstruction(nextLine)) {
+            if (!matchedAny && lineIsTableBoundary && rawNext != null) {
+                String nextLine = rawNext.trim();
+                if (!nextLine.isEmpty() && LINE_CLASSIFIER.classify(nextLine) == 0) {
                     Entry<String, Boolean> labelAndMandatory = extractLabelAndMandatory(line);
                     String keyBase;
                     if (line.toLowerCase().contains("wand number")) {
                         keyBase = buildNZKey(section, currentSubgroup, "Wand Number");
                         result.put(keyBase, cleanValue(nextLine));
                         mandatoryStatus.put(keyBase, false);
-                        System.out.println("[SYSOUT] Writing Wand Number to key: " + keyBase + " = " + nextLine);
+                        if (tracing()) trace("Writing Wand Number to key: {} = {}", keyBase, nextLine);
                     } else {
                         keyBase = buildNZKey(section, currentSubgroup, labelAndMandatory.getKey());
                         String key = makeUniqueKey(keyBase, labelCountMap);
@@ -333,8 +1020,7 @@ public class PdfDocFlatParser {
                         result.put(key, value);
                         mandatoryStatus.put(key, labelAndMandatory.getValue());
                     }
-                    i++;
-                    continue;
+                    return true;
                 }
             }
 
@@ -346,53 +1032,115 @@ public class PdfDocFlatParser {
                     if ("NZ_Description_Of_The_Clinical_Event_Problem_N_A".equals(lastKey)) {
                         String narrativeKey = "NZ_Description_Of_The_Clinical_Event_Problem_Narrative";
                         result.put(narrativeKey, value);
-                        System.out.println("[SYSOUT] Assigned clinical event narrative to key: " + narrativeKey + " => " + value);
-                        System.out.println("[SYSOUT] Skipped overwriting checkbox key: " + lastKey + " with value: " + value);
+                        if (tracing()) trace("Assigned clinical event narrative to key: {} => {}", narrativeKey, value);
+                        if (tracing()) trace("Skipped overwriting checkbox key: {} with value: {}", lastKey, value);
                     } else {
-                        System.out.println("[DEBUG] Single-line narrative or value: " + lastKey + " => " + value);
+                        if (tracing()) trace("Single-line narrative or value: {} => {}", lastKey, value);
                         result.put(lastKey, value);
                     }
                 }
                 lastKey = null;
                 justSawEventProblemCheckboxes = false;
             }
+            return false;
+        }
+
+        void finish() {
+            flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
+        }
+    }
+
+    // Splits the stripper's output on \r?\n as it is written and hands each line to the parser together with the
+    // following line, so no more than one page of text and one pending line are held at a time. Once the parser has
+    // resolved its wanted keys the feed is done: the rest of the output is dropped and close leaves the parser as is.
+    private static final class LineFeed extends Writer {
+        private final SectionParser parser;
+        private final StringBuilder partial = new StringBuilder();
+        private String pending;
+        private boolean done;
+
+        LineFeed(SectionParser parser) {
+            this.parser = parser;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length && !done; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    int end = partial.length();
+                    if (end > 0 && partial.charAt(end - 1) == '\r') end--;
+                    line(partial.substring(0, end));
+                    partial.setLength(0);
+                } else {
+                    partial.append(c);
+                }
+            }
+        }
+
+        private void line(String line) {
+            if (pending == null) {
+                pending = line;
+            } else if (parser.accept(pending, line)) {
+                pending = null;
+            } else {
+                pending = line;
+            }
+            done = parser.resolved();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            if (done) return;
+            if (partial.length() > 0) {
+                line(partial.toString());
+                partial.setLength(0);
+            }
+            if (pending != null) {
+                parser.accept(pending, null);
+                pending = null;
+            }
+            parser.finish();
+        }
+    }
+
+    private static boolean tracing() {
+        return DOCUMENT_TRACE.get() || log.isDebugEnabled();
+    }
+
+    private static void trace(String format, Object... args) {
+        if (DOCUMENT_TRACE.get()) {
+            log.info(format, args);
+        } else {
+            log.debug(format, args);
         }
-        flushNarrative(result, lastKey, narrativeBuilder, inNarrative, section, currentSubgroup, labelCountMap, mandatoryStatus);
     }
 
     private static String cleanValue(String value) {
         if (value == null) return null;
         String trimmed = value.trim();
-        trimmed = trimmed.replaceAll("^\\([^\\)]*\\)\\s*", "");
+        trimmed = RULE_MATCHERS.get().leadingParenthetical.reset(trimmed).replaceFirst("");
         trimmed = removeTrailingGroupingText(trimmed);
         return trimmed.trim();
     }
 
-    private static boolean isTableBoundary(String line) {
-        String l = line.trim().toLowerCase();
-        return l.startsWith("list of other devices involved") || l.startsWith("if other implants involved")
-                || l.startsWith("mfr/sponsor aware of other similar events")
-                || l.startsWith("country where these similar adverse events occurred")
-                || l.startsWith("additional comments");
-    }
-
     private static Entry<String, Boolean> extractLabelAndMandatory(String label) {
         boolean mandatory = false;
         if (label != null && label.contains("*")) {
             mandatory = true;
             label = label.replace("*", "").trim();
         }
-        label = label.replaceAll("^[^A-Za-z0-9]+", "");
-        String[] groupingWords = { "indicate", "select", "choose", "tick", "check", "please", "provide", "enter",
-                "describe", "for details see", "see", "if the device", "is the device", "attach" };
-        String lower = label.toLowerCase();
-        for (String grp : groupingWords) {
-            if (lower.startsWith(grp)) {
-                label = label.substring(grp.length()).trim();
-                lower = label.toLowerCase();
-            }
-        }
-        String[] words = label.trim().split("\\s+|_");
+        label = RULE_MATCHERS.get().leadingNonAlnum.reset(label).replaceFirst("");
+        label = LINE_CLASSIFIER.stripLabelPrefixes(label);
+        String[] words = LABEL_WORD_SPLIT.split(label.trim());
         if (words.length > 3) {
             label = String.join(" ", Arrays.copyOfRange(words, words.length - 3, words.length));
         } else if (words.length > 0) {
@@ -406,9 +1154,10 @@ public class PdfDocFlatParser {
 
     private static String normalizeSectionName(String raw) {
         if (raw == null) return "";
-        String s = raw.replaceAll("\\b\\d+\\.?\\b", "").replaceAll("\\s{2,}", " ").trim();
-        String[] splitters = { " if ", " indicate", ":", "-", " please", " select", " choose", " tick", " check" };
-        for (String splitter : splitters) {
+        RuleMatchers rules = RULE_MATCHERS.get();
+        String s = rules.sectionNumber.reset(raw).replaceAll("");
+        s = rules.multiSpace.reset(s).replaceAll(" ").trim();
+        for (String splitter : SECTION_SPLITTERS) {
             int idx = s.toLowerCase().indexOf(splitter);
             if (idx > 0) s = s.substring(0, idx).trim();
         }
@@ -425,9 +1174,10 @@ public class PdfDocFlatParser {
 
     private static String normalizeToPascalCase(String input) {
         if (input == null) return "";
-        input = input.replaceAll("\\(.*?\\)", "");
-        input = input.replaceAll("[^a-zA-Z0-9]", " ");
-        String[] parts = input.trim().split("\\s+");
+        RuleMatchers rules = RULE_MATCHERS.get();
+        input = rules.parenthetical.reset(input).replaceAll("");
+        input = rules.nonAlnum.reset(input).replaceAll(" ");
+        String[] parts = WHITESPACE.split(input.trim());
         StringBuilder sb = new StringBuilder();
         for (String part : parts) {
             if (part.isEmpty()) continue;
@@ -443,62 +1193,52 @@ public class PdfDocFlatParser {
         if (s.equalsIgnoreCase("true") || s.equalsIgnoreCase("yes")) return true;
         if (s.equalsIgnoreCase("false") || s.equalsIgnoreCase("no")) return false;
         if (label != null && label.toLowerCase().contains("date")) {
-            Matcher m = Pattern.compile("(\\d{1,2}/\\d{1,2}/\\d{4})").matcher(s);
+            Matcher m = RULE_MATCHERS.get().date.reset(s);
             if (m.find()) return m.group(1);
         }
         return s;
     }
 
     private static String removeTrailingGroupingText(String value) {
-        if (value == null) return null;
-        String trimmed = value.trim();
-        String[] groupings = { "specific device information", "device information", "patient information",
-                "event information", "details", "narrative", "summary", "category", "type", "manufacturer", "model",
-                "catalog", "other", "comments", "notes", "example", "section", "subsection", "grouping", "header",
-                "heading", "description", "explanation" };
-        for (String grouping : groupings) {
-            String pattern = "(?i)\\b" + Pattern.quote(grouping) + "\\b\\.?$";
-            trimmed = trimmed.replaceAll(pattern, "").trim();
-        }
-        return trimmed;
+        return LINE_CLASSIFIER.stripTrailingGroupings(value);
     }
 
     private static void flushNarrative(Map<String, Object> result, String lastKey, StringBuilder narrativeBuilder,
                                        boolean inNarrative, String section, String currentSubgroup, Map<String, Integer> labelCountMap, Map<String, Boolean> mandatoryStatus) {
-        System.out.println("[DEBUG] flushNarrative called with: inNarrative=" + inNarrative + ", lastKey=" + lastKey
-                + ", narrativeBuilder.length()=" + narrativeBuilder.length());
+        if (tracing()) trace("flushNarrative called with: inNarrative={}, lastKey={}, narrativeBuilder.length()={}",
+                inNarrative, lastKey, narrativeBuilder.length());
         if (inNarrative && lastKey != null && narrativeBuilder.length() > 0
                 && isValidValue(narrativeBuilder.toString(), lastKey)) {
             String narrative = cleanValue(narrativeBuilder.toString());
             Boolean isMandatory = mandatoryStatus.getOrDefault(lastKey, false);
             if (lastKey.endsWith("_Gender")) {
                 narrative = extractGender(narrative);
-                System.out.println("[SYSOUT] (flushNarrative) Gender key normalized: " + lastKey + " = " + narrative);
+                if (tracing()) trace("(flushNarrative) Gender key normalized: {} = {}", lastKey, narrative);
             }
-            Matcher trailingNumber = Pattern.compile("^(.*?)(\\s+)(\\d+)$").matcher(narrative);
+            Matcher trailingNumber = RULE_MATCHERS.get().trailingNumber.reset(narrative);
             if (trailingNumber.matches()) {
                 String mainText = trailingNumber.group(1).trim();
                 String trailing = trailingNumber.group(3);
                 Object oldVal = result.get(lastKey);
                 if (oldVal instanceof Map && ((Map<?, ?>) oldVal).containsKey("mandatory")) {
                     Map<String, Object> valueObj = Map.of("value", mainText, "mandatory", true);
-                    System.out.println("[DEBUG] Flushing narrative for (mandatory) " + lastKey + ": " + valueObj);
+                    if (tracing()) trace("Flushing narrative for (mandatory) {}: {}", lastKey, valueObj);
                     result.put(lastKey, valueObj);
                 } else {
-                    System.out.println("[DEBUG] Flushing narrative for " + lastKey + ": " + mainText);
+                    if (tracing()) trace("Flushing narrative for {}: {}", lastKey, mainText);
                     result.put(lastKey, mainText);
                 }
                 String wandKey = buildNZKey(section, currentSubgroup, "Wand Number");
-                System.out.println("[SYSOUT] (flushNarrative) Writing Wand Number to key: " + wandKey + " = " + trailing);
+                if (tracing()) trace("(flushNarrative) Writing Wand Number to key: {} = {}", wandKey, trailing);
                 result.put(wandKey, trailing);
             } else {
                 Object oldVal = result.get(lastKey);
                 if (oldVal instanceof Map && ((Map<?, ?>) oldVal).containsKey("mandatory")) {
                     Map<String, Object> valueObj = Map.of("value", narrative, "mandatory", true);
-                    System.out.println("[DEBUG] Flushing narrative for (mandatory) " + lastKey + ": " + valueObj);
+                    if (tracing()) trace("Flushing narrative for (mandatory) {}: {}", lastKey, valueObj);
                     result.put(lastKey, valueObj);
                 } else {
-                    System.out.println("[DEBUG] Flushing narrative for " + lastKey + ": " + narrative);
+                    if (tracing()) trace("Flushing narrative for {}: {}", lastKey, narrative);
                     result.put(lastKey, narrative);
                 }
             }
@@ -507,25 +1247,12 @@ public class PdfDocFlatParser {
     }
 
     private static boolean looksLikeGroupingOrInstruction(String line) {
-        String lower = line.toLowerCase().trim();
-        if (lower.matches("^(specific )?(device|patient|event|report|information|details|narrative|summary|category|type|manufacturer|model|serial|lot|catalog|brand|other|comments|notes|example|section|subsection|grouping|header|heading|description|explanation)[ .:-]*$")) {
-            return true;
-        }
-        if (lower.startsWith("(") && lower.endsWith(")")) return true;
-        if (lower.contains("indicate") || lower.contains("see definition") || lower.contains("category")
-                || lower.contains("grouping") || lower.contains("instruction")
-                || lower.contains("report category (see definitions")
-                || lower.contains("both implant date and explant dates") || lower.startsWith("for details see")
-                || lower.startsWith("please") || lower.startsWith("attach") || lower.startsWith("if the device")
-                || lower.contains("resolution of event and outcomes") || lower.contains("patient focused")
-                || lower.contains("specific device information")) return true;
-        if (lower.matches("^\\(.*\\)$")) return true;
-        return false;
+        return LINE_CLASSIFIER.isGroupingOrInstruction(line);
     }
 
     private static boolean isStrongHeading(String line) {
         String l = line.trim();
-        return l.matches("^(Remedial Actions/Corrective Action/Preventive Action|Other Reporting Information)$");
+        return RULE_MATCHERS.get().strongHeading.reset(l).matches();
     }
 
     private static boolean isLikelyLabelOrHeader(String line) {
@@ -537,17 +1264,18 @@ public class PdfDocFlatParser {
         String val = value.toString().trim();
         if (val.isEmpty()) return false;
         String lower = val.toLowerCase();
+        RuleMatchers rules = RULE_MATCHERS.get();
         if (lower.equals("not applicable")) return false;
         if (lower.startsWith("(") && lower.endsWith(")")) return false;
         if (lower.startsWith("please submit") || lower.contains("submit an initial report")
                 || lower.contains("submit a final report") || lower.startsWith("provide as much detail")
                 || lower.contains("see guidance") || lower.startsWith("specify") || lower.contains("attach")
                 || lower.startsWith("note:") || lower.startsWith("example:") || lower.startsWith("for example:")
-                || lower.startsWith("email:") || lower.matches("^\\*?age:?$") || lower.matches("^\\*?wt.\\(kg\\):?$")
-                || lower.matches("^\\*?m/f:?$") || lower.contains("guidance") || lower.equals("none")
+                || lower.startsWith("email:") || rules.ageLabel.reset(lower).matches() || rules.weightLabel.reset(lower).matches()
+                || rules.genderLabel.reset(lower).matches() || lower.contains("guidance") || lower.equals("none")
                 || lower.equals("click here to enter text") || lower.contains("send this form to")
                 || lower.startsWith("if there have been other similar events reported")
-                || lower.contains("if none, write") || lower.matches("^\\W*$")
+                || lower.contains("if none, write") || rules.noWordChars.reset(lower).matches()
                 || lower.contains("the first report that the reporter")
                 || lower.contains("submit this report when the investigation is complete")
                 || lower.contains("number should include the number sold")
@@ -573,25 +1301,34 @@ public class PdfDocFlatParser {
 
     private static LinkedHashMap<String, Object> flattenAndCleanResult(Map<String, Object> map, Map<String, Boolean> mandatoryStatus) {
         LinkedHashMap<String, Object> cleaned = new LinkedHashMap<>();
+        cleanResult(map, mandatoryStatus, cleaned::put);
+        return cleaned;
+    }
+
+    private static void cleanResult(Map<String, Object> map, Map<String, Boolean> mandatoryStatus,
+                                    BiConsumer<String, Object> cleaned) {
         map.forEach((key, value) -> {
             Boolean isMandatory = mandatoryStatus.getOrDefault(key, false);
-            if (isValidValue(value, key)) {
-                if (value instanceof Map) {
-                    Map<?, ?> vMap = (Map<?, ?>) value;
-                    if (Boolean.TRUE.equals(vMap.get("mandatory"))) {
-                        cleaned.put(key, value);
-                    } else {
-                        cleaned.put(key, vMap.get("value"));
-                    }
-                } else if (isMandatory) {
-                    Map<String, Object> valueObj = Map.of("value", value, "mandatory", true);
-                    cleaned.put(key, valueObj);
+            if (!isValidValue(value, key)) {
+                if (value != null) METRICS.valueRejected();
+                if (isMandatory) METRICS.mandatoryMissing();
+                return;
+            }
+            METRICS.fieldExtracted();
+            if (value instanceof Map) {
+                Map<?, ?> vMap = (Map<?, ?>) value;
+                if (Boolean.TRUE.equals(vMap.get("mandatory"))) {
+                    cleaned.accept(key, value);
                 } else {
-                    cleaned.put(key, value);
+                    cleaned.accept(key, vMap.get("value"));
                 }
+            } else if (isMandatory) {
+                Map<String, Object> valueObj = Map.of("value", value, "mandatory", true);
+                cleaned.accept(key, valueObj);
+            } else {
+                cleaned.accept(key, value);
             }
         });
-        return cleaned;
     }
 
     private static String makeUniqueKey(String base, Map<String, Integer> labelCountMap) {
@@ -600,9 +1337,7 @@ public class PdfDocFlatParser {
     }
 
     public static void printJson(Object obj) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        String json = mapper.writeValueAsString(obj);
+        String json = JsonOutput.prettyWriter().writeValueAsString(obj);
         System.out.println("\n--- FINAL JSON OUTPUT ---\n" + json);
     }
 
@@ -612,7 +1347,7 @@ public class PdfDocFlatParser {
         if (lower.startsWith("male")) return "Male";
         if (lower.startsWith("female")) return "Female";
         if (lower.startsWith("other")) return "Other";
-        String[] words = raw.trim().split("\\s+");
+        String[] words = WHITESPACE.split(raw.trim());
         if (words.length > 0) {
             String first = words[0].toLowerCase();
             if (first.equals("male") || first.equals("female") || first.equals("other")) {
@@ -0,0 +1,73 @@
+package com.example.demo.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+class CompactResultTest {
+
+	@Test
+	void roundTripsNestedSectionsAndMandatoryWrappers() throws IOException {
+		LinkedHashMap<String, Object> result = report("Acme Ltd", "2024-01-31");
+		CompactResult compact = CompactResult.of(result);
+
+		assertEquals(result, compact.toMap());
+		assertEquals(JsonOutput.compactWriter().writeValueAsString(result), json(compact));
+		assertEquals(5, compact.size());
+
+		int date = compact.getSchema().indexOf("Event", "Date");
+		assertEquals(Arrays.asList("Event", "Date"), compact.getSchema().path(date));
+		assertEquals("2024-01-31", compact.get(date));
+		assertTrue(compact.isMandatory(date));
+		assertFalse(compact.isMandatory(compact.getSchema().indexOf("Event", "Outcome", "Recovered")));
+		assertEquals(-1, compact.getSchema().indexOf("Event"));
+	}
+
+	@Test
+	void sharesSchemaBetweenResultsOfOneLayout() {
+		CompactResult first = CompactResult.of(report("Acme Ltd", "2024-01-31"));
+		CompactResult second = CompactResult.of(report("Other Pty", null));
+		assertSame(first.getSchema(), second.getSchema());
+		assertEquals("Other Pty", second.get(0));
+
+		LinkedHashMap<String, Object> reordered = new LinkedHashMap<>();
+		reordered.put("Event", report("Acme Ltd", "2024-01-31").get("Event"));
+		reordered.put("Manufacturer", "Acme Ltd");
+		assertNotSame(first.getSchema(), CompactResult.of(reordered).getSchema());
+	}
+
+	private static LinkedHashMap<String, Object> report(String manufacturer, String date) {
+		LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+		result.put("Manufacturer", manufacturer);
+		LinkedHashMap<String, Object> event = new LinkedHashMap<>();
+		LinkedHashMap<String, Object> dateValue = new LinkedHashMap<>();
+		dateValue.put("value", date);
+		dateValue.put("mandatory", true);
+		event.put("Date", dateValue);
+		LinkedHashMap<String, Object> outcome = new LinkedHashMap<>();
+		outcome.put("Recovered", true);
+		outcome.put("Death", false);
+		event.put("Outcome", outcome);
+		result.put("Event", event);
+		result.put("Attachments", new LinkedHashMap<String, Object>());
+		return result;
+	}
+
+	private static String json(CompactResult compact) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator generator = JsonOutput.createGenerator(out, false)) {
+			compact.writeJson(generator);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvExporterTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void writesRowGroupsWithOneColumnOrderAndMandatoryColumns() throws IOException {
+		try (CsvExporter exporter = new CsvExporter(directory, "nz", 2)) {
+			exporter.append("a.docx", row("Acme, Ltd", true, null));
+			exporter.append("b.docx", row("Say \"hi\"", false, "Pacemaker"));
+			exporter.append("c.docx", row(null, true, null));
+			assertEquals(1, exporter.getParts());
+		}
+
+		assertEquals(Arrays.asList(
+				"file,Manufacturer,Manufacturer__mandatory,Event.Death,Device.Name",
+				"a.docx,\"Acme, Ltd\",true,true,",
+				"b.docx,\"Say \"\"hi\"\"\",false,false,Pacemaker"),
+				Files.readAllLines(directory.resolve("nz-00000.csv"), StandardCharsets.UTF_8));
+		assertEquals(Arrays.asList(
+				"file,Manufacturer,Manufacturer__mandatory,Event.Death,Device.Name",
+				"c.docx,,false,true,"),
+				Files.readAllLines(directory.resolve("nz-00001.csv"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void keepsEarlierColumnsInPlaceWhenALaterPartAddsKeys() throws IOException {
+		LinkedHashMap<String, Object> first = new LinkedHashMap<>();
+		first.put("Model", "X1");
+		first.put("Event", Collections.singletonMap("Date", "2024-01-31"));
+		LinkedHashMap<String, Object> second = new LinkedHashMap<>();
+		second.put("Event.Date", "2024-02-29");
+		LinkedHashMap<String, Object> serial = new LinkedHashMap<>();
+		serial.put("value", "S-7");
+		serial.put("mandatory", true);
+		second.put("Serial", serial);
+		second.put("Model", "X2");
+
+		try (CsvExporter exporter = new CsvExporter(directory, "nz", 1)) {
+			exporter.append("a.docx", first);
+			exporter.append("b.docx", second);
+		}
+
+		assertEquals(Arrays.asList(
+				"file,Model,Event.Date",
+				"a.docx,X1,2024-01-31"),
+				Files.readAllLines(directory.resolve("nz-00000.csv"), StandardCharsets.UTF_8));
+		assertEquals(Arrays.asList(
+				"file,Model,Event.Date,Event\\.Date,Serial,Serial__mandatory",
+				"b.docx,X2,,2024-02-29,S-7,true"),
+				Files.readAllLines(directory.resolve("nz-00001.csv"), StandardCharsets.UTF_8));
+		assertEquals(Collections.singletonList("file,Model,Event.Date,Event\\.Date,Serial,Serial__mandatory"),
+				Files.readAllLines(directory.resolve("nz-header.csv"), StandardCharsets.UTF_8));
+	}
+
+	private static LinkedHashMap<String, Object> row(String manufacturer, boolean death, String device) {
+		LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+		if (manufacturer != null && manufacturer.startsWith("Acme")) {
+			LinkedHashMap<String, Object> valObj = new LinkedHashMap<>();
+			valObj.put("value", manufacturer);
+			valObj.put("mandatory", true);
+			result.put("Manufacturer", valObj);
+		} else {
+			result.put("Manufacturer", manufacturer);
+		}
+		result.put("Event", Collections.singletonMap("Death", death));
+		if (device != null) {
+			result.put("Device", Collections.singletonMap("Name", device));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,34 @@
+package com.example.demo.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class FormLineClassifierTest {
+
+	private final FormLineClassifier classifier = FormLineClassifier.forVocabulary("pdf");
+
+	@Test
+	void classifiesBoundaryAndGroupingLines() {
+		assertTrue(classifier.isTableBoundary("  Additional comments: none"));
+		assertFalse(classifier.isTableBoundary("See additional comments"));
+		assertTrue(classifier.isGroupingOrInstruction("Specific Device Information"));
+		assertTrue(classifier.isGroupingOrInstruction("Device:"));
+		assertTrue(classifier.isGroupingOrInstruction("(optional)"));
+		assertTrue(classifier.isGroupingOrInstruction("Please indicate the outcome"));
+		assertFalse(classifier.isGroupingOrInstruction("Devices"));
+		assertFalse(classifier.isGroupingOrInstruction("Prototype"));
+	}
+
+	@Test
+	void stripsPrefixesAndSuffixesInVocabularyOrder() {
+		assertEquals("date of event", classifier.stripLabelPrefixes("Please provide date of event"));
+		assertEquals("Pacemaker", classifier.stripTrailingGroupings("Pacemaker Model Details."));
+		assertEquals("Pacemaker device information",
+				classifier.stripTrailingGroupings("Pacemaker device information details"));
+		assertEquals("Prototype", classifier.stripTrailingGroupings("Prototype"));
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.example.demo.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FormSnifferTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void detectsBundledForms() throws IOException {
+		assertEquals(FormType.MDIR, FormSniffer.detect(resource("MDIR_Form.docx")));
+		assertEquals(FormType.MDIR, FormSniffer.detect(resource("test.docx")));
+		Path nz = resource("NZ_Adverse.docx");
+		assertEquals(FormType.NZ_ADVERSE, FormSniffer.detect(nz));
+		assertFalse(FormSniffer.isPdf(nz));
+	}
+
+	@Test
+	void recognisesPdfAndRejectsOtherFiles() throws IOException {
+		Path pdf = Files.write(directory.resolve("form.pdf"), "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII));
+		assertTrue(FormSniffer.isPdf(pdf));
+		assertNull(FormSniffer.detect(pdf));
+		assertNull(FormSniffer.detect(Files.write(directory.resolve("empty.docx"), new byte[0])));
+		Path truncated = Files.write(directory.resolve("notes.txt"), "PK".getBytes(StandardCharsets.US_ASCII));
+		assertNull(FormSniffer.detect(truncated));
+	}
+
+	@Test
+	void joinsRunTextSplitAcrossRuns() {
+		String xml = "<w:p><w:r><w:t>Medical Device </w:t></w:r><w:r><w:t xml:space=\"preserve\">Incident Report</w:t>"
+				+ "</w:r><w:tbl><w:tr><w:tc><w:t/></w:tc></w:tr></w:tbl><w:r><w:t>For use by industry</w:t></w:r></w:p>";
+		assertEquals("Medical Device Incident ReportFor use by industry", FormSniffer.runText(xml));
+	}
+
+	private Path resource(String name) throws IOException {
+		Path file = directory.resolve(name);
+		try (InputStream in = FormSnifferTest.class.getClassLoader().getResourceAsStream(name)) {
+			Files.copy(in, file);
+		}
+		return file;
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.demo.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+class TextSegmentsTest {
+
+	// Characters that exercise every separator, whitespace and '$' corner of the replaced regexes
+	private static final char[] ALPHABET = {'a', 'B', ' ', '\t', '\n', '\r', ':', '#', '*', '-', '\u000B', '\u0085',
+			'\u2028', '\u2029', '\u00A0'};
+
+	@Test
+	void segmentsMatchRegexSplit() {
+		assertEquals(Arrays.asList("Name", "Date *", "x"), segments(" Name\t\r\nDate *\r\n\n\tx \r"));
+		assertEquals(Collections.emptyList(), segments(" \t\r\n"));
+		Random random = new Random(20);
+		for (int i = 0; i < 20_000; i++) {
+			String text = randomText(random);
+			List<String> expected = new ArrayList<>();
+			for (String part : text.split("\\t|\\r?\\n")) {
+				if (!part.trim().isEmpty()) expected.add(part.trim());
+			}
+			assertEquals(expected, segments(text), text);
+		}
+	}
+
+	@Test
+	void stripsMatchReplacedRegexes() {
+		assertEquals("Device Name", TextSegments.stripTrailingMarks("Device Name :*", ":#*"));
+		assertEquals("Model #", TextSegments.stripTrailingMarks("Model # :", ":"));
+		assertEquals("Brand", TextSegments.stripLast("Brand*", '*'));
+		assertEquals("Brand *", TextSegments.stripLast("Brand * ", '*'));
+		Random random = new Random(18);
+		for (int i = 0; i < 20_000; i++) {
+			String text = randomText(random);
+			String trimmed = text.trim();
+			assertEquals(trimmed.replaceAll("\\s*[:#\\*]+\\s*$", "").trim(),
+					TextSegments.stripTrailingMarks(trimmed, ":#*"), trimmed);
+			assertEquals(text.replaceAll("\\s*[:#]+\\s*$", "").trim(),
+					TextSegments.stripTrailingMarks(text, ":#"), text);
+			assertEquals(text.replaceAll("\\*$", "").trim(), TextSegments.stripLast(text, '*'), text);
+			assertEquals(text.replaceAll(":$", "").trim(), TextSegments.stripLast(text, ':'), text);
+			int end = random.nextInt(text.length() + 1);
+			assertEquals(text.substring(0, end).replaceAll("\\*$", "").trim(),
+					TextSegments.stripLast(text, 0, end, '*'), text);
+		}
+	}
+
+	private static List<String> segments(String text) {
+		List<String> parts = new ArrayList<>();
+		TextSegments segments = new TextSegments(text);
+		while (segments.next()) {
+			parts.add(segments.segment());
+		}
+		return parts;
+	}
+
+	private static String randomText(Random random) {
+		char[] text = new char[random.nextInt(9)];
+		for (int i = 0; i < text.length; i++) {
+			text[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+		}
+		return new String(text);
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.demo.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.apache.poi.xwpf.usermodel.*;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+class WordFormParserTest {
+
+	@Test
+	void writesRepeatedHeadingOnceInMapOrder() throws IOException {
+		byte[] docx = form("Device", "Model: X1", "Event", "Date: 2024-01-31", "Device", "Model: X2");
+
+		for (WordFormParser.Engine engine : WordFormParser.Engine.values()) {
+			LinkedHashMap<String, Object> map =
+					WordFormParser.extractDataFromDocument(new ByteArrayInputStream(docx), engine);
+			assertEquals(Arrays.asList("Device", "Event"), new ArrayList<>(map.keySet()));
+			assertEquals(Collections.singletonMap("Model", "X2"), map.get("Device"));
+			assertEquals(JsonOutput.compactWriter().writeValueAsString(map), json(docx, engine), engine.name());
+		}
+	}
+
+	@Test
+	void writesDistinctHeadingsAsTheyAreRead() throws IOException {
+		byte[] docx = form("Device", "Model: X1", "Event", "Date: 2024-01-31");
+
+		for (WordFormParser.Engine engine : WordFormParser.Engine.values()) {
+			LinkedHashMap<String, Object> map =
+					WordFormParser.extractDataFromDocument(new ByteArrayInputStream(docx), engine);
+			assertEquals(JsonOutput.compactWriter().writeValueAsString(map), json(docx, engine), engine.name());
+		}
+	}
+
+	@Test
+	void holdsBackFieldsOnlyUntilTheLastRepeat() {
+		List<String> written = new ArrayList<>();
+		Map<String, Integer> occurrences = new HashMap<>();
+		occurrences.put("A", 1);
+		occurrences.put("B", 2);
+		occurrences.put("C", 1);
+		occurrences.put("D", 1);
+		OrderedFieldSink sink = new OrderedFieldSink((key, value) -> written.add(key + "=" + value), occurrences);
+
+		sink.accept("A", 1);
+		assertEquals(Arrays.asList("A=1"), written);
+		sink.accept("B", 1);
+		sink.accept("C", 1);
+		assertEquals(Arrays.asList("A=1"), written);
+		sink.accept("B", 2);
+		assertEquals(Arrays.asList("A=1", "B=2", "C=1"), written);
+		sink.accept("D", 1);
+		sink.finish();
+		assertEquals(Arrays.asList("A=1", "B=2", "C=1", "D=1"), written);
+	}
+
+	// Alternating bold heading paragraphs and one-cell tables holding the given "Label: value" text
+	private static byte[] form(String... headingsAndCells) throws IOException {
+		try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+			for (int i = 0; i < headingsAndCells.length; i += 2) {
+				XWPFRun heading = document.createParagraph().createRun();
+				heading.setBold(true);
+				heading.setText(headingsAndCells[i]);
+				document.createTable(1, 1).getRow(0).getCell(0).setText(headingsAndCells[i + 1]);
+			}
+			document.write(out);
+			return out.toByteArray();
+		}
+	}
+
+	private static String json(byte[] docx, WordFormParser.Engine engine) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator generator = JsonOutput.createGenerator(out, false)) {
+			WordFormParser.writeJson(new ByteArrayInputStream(docx), engine, generator);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}